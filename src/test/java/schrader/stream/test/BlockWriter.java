@@ -0,0 +1,98 @@
+package schrader.stream.test;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Writes generated files of any size: the blocks of a file are generated by a pool of threads into
+// reusable direct buffers and written through a FileChannel in block order. A block depends on its
+// index only, so the file is the same for any number of threads.
+public final class BlockWriter {
+
+    public static final int BUFFER_SIZE = 8 << 20;
+
+    @FunctionalInterface
+    public interface BlockSource {
+
+        // Puts block 'block' into the buffer, false if the file has fewer blocks. The block is
+        // generated again into a larger buffer if it overflows.
+        boolean fill(long block, ByteBuffer into);
+    }
+
+    private BlockWriter() {
+    }
+
+    // blocks are written until the source ends or the file has reached maxBytes, returns the file size
+    public static long write(Path file, int threads, long maxBytes, BlockSource source) throws IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "block-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        BlockingQueue<ByteBuffer> buffers = new ArrayBlockingQueue<>(2 * threads);
+        Deque<Future<ByteBuffer>> pending = new ArrayDeque<>();
+        long written = 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            long next = 0;
+            while (written < maxBytes) {
+                while (pending.size() < 2 * threads) {
+                    long block = next++;
+                    pending.add(pool.submit(() -> generate(block, source, buffers)));
+                }
+                Future<ByteBuffer> head = pending.poll();
+                ByteBuffer buffer = head == null ? null : get(head);
+                if (buffer == null) {
+                    break; // the first block past the end, the later ones are past it too
+                }
+                while (buffer.hasRemaining()) {
+                    written += channel.write(buffer);
+                }
+                buffers.offer(buffer.clear());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return written;
+    }
+
+    private static ByteBuffer generate(long block, BlockSource source, BlockingQueue<ByteBuffer> buffers) {
+        ByteBuffer buffer = buffers.poll();
+        if (buffer == null) {
+            buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        }
+        while (true) {
+            try {
+                if (!source.fill(block, buffer)) {
+                    buffers.offer(buffer.clear());
+                    return null;
+                }
+                return buffer.flip();
+            } catch (BufferOverflowException e) {
+                buffer = ByteBuffer.allocateDirect(buffer.capacity() * 2);
+            }
+        }
+    }
+
+    private static ByteBuffer get(Future<ByteBuffer> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("generating a block failed", e.getCause());
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package schrader.stream.test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.SplittableRandom;
+
+// Reproducible text corpus with Zipf distributed words, as natural language has. The lines are
+// made in blocks on all cores, the file is the same for any number of threads.
+final class Corpus {
+
+    static final String VERSION = "v2"; // part of the cached file names, to be raised when the output changes
+    private static final int BLOCK_LINES = 16_384;
+    private static final long SEED = 4711;
+
+    private long lines = 1_000_000;
+    private long maxBytes = Long.MAX_VALUE;
+    private int vocabulary = 50_000;
+    private long seed = SEED;
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    Corpus lines(long lines) {
+        this.lines = lines;
+        return this;
+    }
+
+    // stops after the first block reaching the size, the line count is ignored then
+    Corpus maxBytes(long maxBytes) {
+        this.lines = Long.MAX_VALUE;
+        this.maxBytes = maxBytes;
+        return this;
+    }
+
+    Corpus vocabulary(int vocabulary) {
+        this.vocabulary = vocabulary;
+        return this;
+    }
+
+    Corpus seed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    Corpus threads(int threads) {
+        this.threads = threads;
+        return this;
+    }
+
+    // generated once per line count under java.io.tmpdir and reused afterwards
+    static Path cached(int lines) throws IOException {
+        Path dir = Paths.get(System.getProperty("java.io.tmpdir"), "stream-demo");
+        Path file = dir.resolve("words-" + lines + "-" + VERSION + ".txt");
+        if (Files.notExists(file)) {
+            Files.createDirectories(dir);
+            Path tmp = Files.createTempFile(dir, "words-" + lines, ".tmp");
+            write(tmp, lines, SEED);
+            Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE);
+        }
+        return file;
+    }
+
+    static void write(Path file, int lines, long seed) throws IOException {
+        new Corpus().lines(lines).seed(seed).write(file);
+    }
+
+    // returns the file size
+    long write(Path file) throws IOException {
+        byte[][] words = new byte[vocabulary][];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = word(i).getBytes(StandardCharsets.US_ASCII);
+        }
+        Zipf zipf = new Zipf(vocabulary);
+        return BlockWriter.write(file, threads, maxBytes, (block, into) -> {
+            long first = block * BLOCK_LINES;
+            if (first >= lines) {
+                return false;
+            }
+            SplittableRandom random = Zipf.random(seed, block);
+            for (long line = first; line < Math.min(lines, first + BLOCK_LINES); line++) {
+                int n = 8 + random.nextInt(8);
+                for (int i = 0; i < n; i++) {
+                    into.put(words[zipf.next(random)]).put((byte) (i + 1 < n ? ' ' : '.'));
+                }
+                into.put((byte) '\n');
+            }
+            return true;
+        });
+    }
+
+    // bijective base-26 name of the rank: a, b, .., z, aa, ab, ..
+    private static String word(int rank) {
+        StringBuilder sb = new StringBuilder();
+        for (int r = rank + 1; r > 0; r = (r - 1) / 26) {
+            sb.append((char) ('a' + (r - 1) % 26));
+        }
+        return sb.reverse().toString();
+    }
+}
@@ -0,0 +1,320 @@
+package schrader.stream.test;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+// The runs a count table within a memory budget spills to temp files, see SpillingCounts and
+// SpillingWordCounts. A run holds the record count as a fixed long, patched in on close, and the
+// (key, count) records in ascending key order as written by the Codec. forEach() merges the runs
+// and the table k-way and streams the sums in key order. It merges at most budget / RUN_BUFFER
+// runs at once, beyond that groups of runs are merged into new runs first, so the heap and the
+// open files stay bounded whatever the number of keys.
+//
+// C is the cursor over the records of a run or the table, it holds the key in whatever form the
+// table keeps it, so long keys are merged without boxing.
+public final class SpilledRuns<C extends SpilledRuns.Cursor> implements AutoCloseable {
+
+    public static final int RUN_BUFFER = 64 << 10;
+    private static final int MAX_FAN_IN = 512;
+
+    private final Budget budget;
+    private final Path dir;
+    private final String prefix;
+    private final Codec<C> codec;
+    private final Comparator<? super C> order;
+    private final List<Path> runs = new ArrayList<>();
+    private long reserved; // of the budget, by the table
+    private long spilledBytes;
+    private int maxOpenRuns;
+
+    public SpilledRuns(Budget budget, Path dir, String prefix, Codec<C> codec, Comparator<? super C> order) {
+        this.budget = budget;
+        this.dir = dir;
+        this.prefix = prefix;
+        this.codec = codec;
+        this.order = order;
+    }
+
+    // Grows the table's reservation to its size, by 'needed', false if the table has to spill:
+    // once the budget is used up, unless the table holds less than a block, see Budget.
+    public boolean reserve(long size, long needed) {
+        if (budget.tryReserve(needed)) {
+            reserved += needed;
+            return true;
+        }
+        if (size >= budget.block) {
+            return false;
+        }
+        budget.free.addAndGet(-needed);
+        reserved += needed;
+        return true;
+    }
+
+    public long reserved() {
+        return reserved;
+    }
+
+    // the table has been dropped
+    public void release() {
+        budget.free.addAndGet(reserved);
+        reserved = 0;
+    }
+
+    // writes the records of the table as a new run, the caller drops the table and release()s it
+    public void spill(C table) throws IOException {
+        Path run = newRun();
+        try (Writer out = new Writer(run)) {
+            while (table.next()) {
+                out.write(table, table.count);
+            }
+        }
+        spilledBytes += Files.size(run);
+    }
+
+    // takes the runs of the other one
+    public void addAll(SpilledRuns<C> other) {
+        runs.addAll(other.runs);
+        spilledBytes += other.spilledBytes;
+        other.runs.clear();
+    }
+
+    public int runs() {
+        return runs.size();
+    }
+
+    public long spilledBytes() {
+        return spilledBytes;
+    }
+
+    // the most spilled runs read at once by forEach()
+    public int maxOpenRuns() {
+        return maxOpenRuns;
+    }
+
+    // the (key, count) sums of the runs and the table in ascending key order
+    public void forEach(C table, RecordConsumer<? super C> consumer) throws IOException {
+        while (runs.size() > budget.fanIn) {
+            compact();
+        }
+        List<C> open = new ArrayList<>();
+        List<DataInputStream> files = new ArrayList<>();
+        try {
+            for (Path path : runs) {
+                open.add(open(path, files));
+            }
+            maxOpenRuns = Math.max(maxOpenRuns, open.size());
+            open.add(table);
+            merge(open, consumer);
+        } finally {
+            closeAll(files);
+        }
+    }
+
+    // deletes the runs and releases the table
+    @Override
+    public void close() throws IOException {
+        for (Path run : runs) {
+            Files.deleteIfExists(run);
+        }
+        runs.clear();
+        release();
+    }
+
+    // merges the oldest runs, as many as can be open at once, into a new run
+    private void compact() throws IOException {
+        List<Path> group = new ArrayList<>(runs.subList(0, budget.fanIn));
+        List<C> open = new ArrayList<>();
+        List<DataInputStream> files = new ArrayList<>();
+        try (Writer out = new Writer(newRun())) {
+            for (Path path : group) {
+                open.add(open(path, files));
+            }
+            maxOpenRuns = Math.max(maxOpenRuns, open.size());
+            merge(open, out::write);
+        } finally {
+            closeAll(files);
+        }
+        runs.removeAll(group);
+        for (Path run : group) {
+            Files.delete(run);
+        }
+    }
+
+    private void merge(List<C> cursors, RecordConsumer<? super C> consumer) throws IOException {
+        PriorityQueue<C> heads = new PriorityQueue<>(order);
+        for (C cursor : cursors) {
+            if (cursor.next()) {
+                heads.add(cursor);
+            }
+        }
+        while (!heads.isEmpty()) {
+            C head = heads.poll();
+            long count = head.count;
+            // the equal keys are summed up before head moves on
+            while (!heads.isEmpty() && order.compare(heads.peek(), head) == 0) {
+                C same = heads.poll();
+                count += same.count;
+                if (same.next()) {
+                    heads.add(same);
+                }
+            }
+            consumer.accept(head, count);
+            if (head.next()) {
+                heads.add(head);
+            }
+        }
+    }
+
+    private C open(Path path, List<DataInputStream> files) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), RUN_BUFFER));
+        files.add(in);
+        long records = in.readLong();
+        return codec.reader(in, records);
+    }
+
+    private static void closeAll(List<DataInputStream> files) throws IOException {
+        for (DataInputStream in : files) {
+            in.close();
+        }
+    }
+
+    private Path newRun() throws IOException {
+        Files.createDirectories(dir);
+        Path run = Files.createTempFile(dir, prefix, ".run");
+        runs.add(run);
+        budget.runs.add(run);
+        return run;
+    }
+
+    // The budget of the tables counting for one collect(), in whatever unit the tables are measured,
+    // which the containers reserve in blocks of at least 'block'. A parallel collect() holds a
+    // container per task, and a finished one lives on until its sibling is done, so the budget is
+    // shared rather than split. A table spills once its growth cannot be reserved, unless it holds
+    // less than a block: then it takes it anyway, which keeps the runs from fragmenting while
+    // finished tables hold most of the budget. The block per thread this may overshoot is set
+    // aside up front. The runs are tracked so a failed collect() can delete them.
+    public static final class Budget {
+
+        private final AtomicLong free;
+        private final Queue<Path> runs = new ConcurrentLinkedQueue<>();
+        private final long block;
+        private final int fanIn;
+
+        // 'bytes' bounds the runs merged at once, 'tables' of them are for the tables
+        public Budget(long bytes, long tables, long block, int threads) {
+            this.block = block;
+            this.free = new AtomicLong(tables - block * threads);
+            this.fanIn = (int) Math.max(2, Math.min(bytes / RUN_BUFFER, MAX_FAN_IN));
+        }
+
+        public long block() {
+            return block;
+        }
+
+        private boolean tryReserve(long units) {
+            for (long available = free.get(); available >= units; available = free.get()) {
+                if (free.compareAndSet(available, available - units)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        public void deleteRuns(Throwable failure) {
+            for (Path run : runs) {
+                try {
+                    Files.deleteIfExists(run);
+                } catch (IOException e) {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+    }
+
+    // The record format of the runs. A reader decodes the records of a run into a cursor, an
+    // encoder writes the key of a cursor and may keep the previous key to delta-encode the next.
+    public interface Codec<C> {
+
+        Encoder<C> encoder();
+
+        C reader(DataInputStream in, long records);
+    }
+
+    @FunctionalInterface
+    public interface Encoder<C> {
+
+        void write(DataOutputStream out, C key, long count) throws IOException;
+    }
+
+    @FunctionalInterface
+    public interface RecordConsumer<C> {
+
+        void accept(C key, long count) throws IOException;
+    }
+
+    // positioned at one (key, count) by next(), the key is held by the subclass
+    public abstract static class Cursor {
+
+        private long remaining;
+        public long count;
+
+        protected Cursor(long records) {
+            this.remaining = records;
+        }
+
+        public final boolean next() throws IOException {
+            if (remaining == 0) {
+                return false;
+            }
+            read();
+            remaining--;
+            return true;
+        }
+
+        // reads the key and the count of the next record
+        protected abstract void read() throws IOException;
+    }
+
+    // writes a run, the record count is patched into its header on close
+    private final class Writer implements AutoCloseable {
+
+        private final Path path;
+        private final DataOutputStream out;
+        private final Encoder<C> encoder = codec.encoder();
+        private long records;
+
+        Writer(Path path) throws IOException {
+            this.path = path;
+            this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), RUN_BUFFER));
+            out.writeLong(0);
+        }
+
+        void write(C key, long count) throws IOException {
+            encoder.write(out, key, count);
+            records++;
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                channel.write(ByteBuffer.allocate(Long.BYTES).putLong(0, records), 0);
+            }
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package schrader.stream.test;
+
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.ObjLongConsumer;
+import java.util.stream.Collector;
+import java.util.stream.Stream;
+
+// Word counts within a memory budget: words are counted in a WordCounts table until the budget is
+// used up, then the table is spilled to a run sorted by word and dropped, see SpilledRuns. A run
+// holds per word the length of the prefix shared with the word before, the remaining UTF-8 bytes
+// and the count, all lengths and counts as varints.
+final class SpillingWordCounts implements AutoCloseable {
+
+    private static final RunFormat FORMAT = new RunFormat();
+
+    private final SpilledRuns<Run> runs;
+    private WordCounts table = new WordCounts();
+
+    SpillingWordCounts(long budget) {
+        this(budget, Paths.get(System.getProperty("java.io.tmpdir")));
+    }
+
+    SpillingWordCounts(long budget, Path dir) {
+        this(budget(budget, 1), dir);
+    }
+
+    private SpillingWordCounts(SpilledRuns.Budget budget, Path dir) {
+        this.runs = new SpilledRuns<>(budget, dir, "words-", FORMAT, Comparator.comparing((Run run) -> run.word));
+    }
+
+    static SpillingWordCounts count(Stream<String> lines, long budget) {
+        return count(lines, budget, Paths.get(System.getProperty("java.io.tmpdir")));
+    }
+
+    // Counts into containers sharing the budget, one per task of a parallel stream, the combiner
+    // hands the runs of one to the other. The result is to be read and closed by the caller, the
+    // runs spilled before a failure are deleted.
+    static SpillingWordCounts count(Stream<String> lines, long budget, Path dir) {
+        SpilledRuns.Budget shared = budget(budget, Runtime.getRuntime().availableProcessors());
+        try {
+            return lines.collect(Collector.of(() -> new SpillingWordCounts(shared, dir),
+                    SpillingWordCounts::addWords,
+                    SpillingWordCounts::merge,
+                    Collector.Characteristics.UNORDERED, Collector.Characteristics.IDENTITY_FINISH));
+        } catch (RuntimeException | Error e) {
+            shared.deleteRuns(e);
+            throw e;
+        }
+    }
+
+    // in bytes: the tables take up to 2/3 of the budget, the rest covers the sorted words of a spill
+    private static SpilledRuns.Budget budget(long bytes, int threads) {
+        long tables = bytes / 3 * 2;
+        return new SpilledRuns.Budget(bytes, tables, tables / (8L * threads), threads);
+    }
+
+    void addWords(String line) {
+        table.addWords(line);
+        grow();
+    }
+
+    SpillingWordCounts merge(SpillingWordCounts other) {
+        runs.addAll(other.runs);
+        table = table.merge(other.table);
+        other.table = new WordCounts();
+        runs.release();
+        other.runs.release();
+        grow();
+        return this;
+    }
+
+    int runs() {
+        return runs.runs();
+    }
+
+    long spilledBytes() {
+        return runs.spilledBytes();
+    }
+
+    // the most spilled runs read at once by forEach()
+    int maxOpenRuns() {
+        return runs.maxOpenRuns();
+    }
+
+    // the (word, count) sums in ascending word order
+    void forEach(ObjLongConsumer<String> consumer) throws IOException {
+        runs.forEach(new Run(sorted(table), table), (run, count) -> consumer.accept(run.word, count));
+    }
+
+    // "word count" lines in word order
+    void writeTo(Path file) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+            forEach((word, count) -> {
+                try {
+                    writer.write(word);
+                    writer.write(' ');
+                    writer.write(Long.toString(count));
+                    writer.newLine();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    // the k most frequent words off the merged stream, ties ordered by word like WordCounts.top
+    List<Map.Entry<String, Long>> top(int k) throws IOException {
+        Comparator<Map.Entry<String, Long>> rank = Map.Entry.<String, Long>comparingByValue()
+                .thenComparing(Map.Entry.<String, Long>comparingByKey().reversed());
+        PriorityQueue<Map.Entry<String, Long>> heap = new PriorityQueue<>(rank);
+        forEach((word, count) -> {
+            if (heap.size() < k) {
+                heap.add(new AbstractMap.SimpleImmutableEntry<>(word, count));
+            } else if (k > 0 && count > heap.peek().getValue()) { // the later word loses a tie
+                heap.poll();
+                heap.add(new AbstractMap.SimpleImmutableEntry<>(word, count));
+            }
+        });
+        List<Map.Entry<String, Long>> top = new ArrayList<>(heap);
+        top.sort(rank.reversed());
+        return top;
+    }
+
+    // deletes the runs
+    @Override
+    public void close() throws IOException {
+        runs.close();
+        table = new WordCounts();
+    }
+
+    // the table outgrew its reservation: takes the bytes from the budget, or spills
+    private void grow() {
+        long bytes = table.bytes();
+        if (bytes > runs.reserved() && !runs.reserve(bytes, bytes - runs.reserved())) {
+            spill();
+        }
+    }
+
+    private void spill() {
+        try {
+            runs.spill(new Run(sorted(table), table));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        table = new WordCounts();
+        runs.release();
+    }
+
+    // the words of the table sorted, their counts are looked up by word
+    private static String[] sorted(WordCounts table) {
+        String[] words = new String[table.size()];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = table.word(i);
+        }
+        Arrays.sort(words);
+        return words;
+    }
+
+    private static long count(WordCounts table, String word) {
+        return table.get(word, 0, word.length(), WordCounts.hash(word, 0, word.length()));
+    }
+
+    private static final class RunFormat implements SpilledRuns.Codec<Run> {
+
+        @Override
+        public SpilledRuns.Encoder<Run> encoder() {
+            return new WordEncoder();
+        }
+
+        @Override
+        public Run reader(DataInputStream in, long records) {
+            return new Run(in, records);
+        }
+    }
+
+    // the words in ascending order, each without the prefix shared with the word before
+    private static final class WordEncoder implements SpilledRuns.Encoder<Run> {
+
+        private byte[] previous = new byte[0];
+
+        @Override
+        public void write(DataOutputStream out, Run run, long count) throws IOException {
+            byte[] bytes = run.word.getBytes(StandardCharsets.UTF_8);
+            int shared = 0;
+            int max = Math.min(previous.length, bytes.length);
+            while (shared < max && previous[shared] == bytes[shared]) {
+                shared++;
+            }
+            Varint.write(out, shared);
+            Varint.write(out, bytes.length - shared);
+            out.write(bytes, shared, bytes.length - shared);
+            Varint.writeSigned(out, count);
+            previous = bytes;
+        }
+    }
+
+    // a spilled run or the sorted table, positioned at one (word, count) by next()
+    private static final class Run extends SpilledRuns.Cursor {
+
+        private final DataInputStream in;
+        private final String[] words;
+        private final WordCounts table;
+        private int index;
+        private byte[] bytes = new byte[64];
+        String word;
+
+        Run(DataInputStream in, long records) {
+            super(records);
+            this.in = in;
+            this.words = null;
+            this.table = null;
+        }
+
+        Run(String[] words, WordCounts table) {
+            super(words.length);
+            this.in = null;
+            this.words = words;
+            this.table = table;
+        }
+
+        @Override
+        protected void read() throws IOException {
+            if (words != null) {
+                word = words[index++];
+                count = count(table, word);
+            } else {
+                int shared = (int) Varint.read(in);
+                int suffix = (int) Varint.read(in);
+                int length = shared + suffix;
+                if (length > bytes.length) {
+                    bytes = Arrays.copyOf(bytes, Math.max(length, bytes.length * 2));
+                }
+                in.readFully(bytes, shared, suffix);
+                word = new String(bytes, 0, length, StandardCharsets.UTF_8);
+                count = Varint.readSigned(in);
+            }
+        }
+    }
+}
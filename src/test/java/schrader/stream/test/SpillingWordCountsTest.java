@@ -0,0 +1,97 @@
+package schrader.stream.test;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SpillingWordCountsTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void mergesSpilledRunsInWordOrder() throws IOException {
+        Path file = dir.resolve("words.txt");
+        new Corpus().lines(50_000).vocabulary(200_000).seed(24).write(file);
+        Map<String, Long> expected;
+        try (Stream<String> lines = Files.lines(file)) {
+            expected = lines.flatMap(line -> Arrays.stream(line.split("\\W+")))
+                    .filter(word -> !word.isEmpty())
+                    .collect(Collectors.groupingBy(word -> word, TreeMap::new, Collectors.counting()));
+        }
+        Path runs = dir.resolve("runs");
+        Map<String, Long> merged = new TreeMap<>();
+        List<String> order = new ArrayList<>();
+        SpillingWordCounts counts;
+        try (Stream<String> lines = Files.lines(file)) {
+            counts = lines.collect(() -> new SpillingWordCounts(1 << 20, runs), SpillingWordCounts::addWords,
+                    SpillingWordCounts::merge);
+        }
+        try (counts) {
+            assertThat(counts.runs()).isGreaterThan(2);
+            assertThat(counts.spilledBytes()).isPositive();
+            counts.forEach((word, count) -> {
+                order.add(word);
+                merged.put(word, count);
+            });
+            assertThat(order).isSorted().doesNotHaveDuplicates();
+            assertThat(merged).isEqualTo(expected);
+
+            Path out = dir.resolve("counts.txt");
+            counts.writeTo(out);
+            assertThat(Files.readAllLines(out)).hasSize(expected.size()).startsWith(
+                    expected.entrySet().iterator().next().getKey() + " " + expected.values().iterator().next());
+        }
+        try (Stream<Path> left = Files.list(runs)) {
+            assertThat(left).isEmpty();
+        }
+    }
+
+    @Test
+    void mergesManyRunsWithBoundedFanIn() throws IOException {
+        Path file = dir.resolve("words.txt");
+        new Corpus().lines(50_000).vocabulary(200_000).seed(24).write(file);
+        Map<String, Long> expected;
+        try (Stream<String> lines = Files.lines(file)) {
+            expected = lines.flatMap(line -> Arrays.stream(line.split("\\W+")))
+                    .filter(word -> !word.isEmpty())
+                    .collect(Collectors.groupingBy(word -> word, TreeMap::new, Collectors.counting()));
+        }
+        Path runs = dir.resolve("runs");
+        Map<String, Long> merged = new TreeMap<>();
+        try (SpillingWordCounts counts = new SpillingWordCounts(256 << 10, runs)) { // 4 runs of 64 KB buffers
+            try (Stream<String> lines = Files.lines(file)) {
+                lines.forEach(counts::addWords);
+            }
+            assertThat(counts.runs()).isGreaterThan(40);
+            counts.forEach(merged::put);
+            assertThat(counts.maxOpenRuns()).isLessThanOrEqualTo(4);
+            assertThat(merged).isEqualTo(expected);
+        }
+        try (Stream<Path> left = Files.list(runs)) {
+            assertThat(left).isEmpty();
+        }
+    }
+
+    @Test
+    void topRanksTiesByWord() throws IOException {
+        try (SpillingWordCounts counts = new SpillingWordCounts(0, dir)) { // every line spills
+            Stream.of("b a", "c b", "d", "c a", "e").forEach(counts::addWords);
+            assertThat(counts.runs()).isEqualTo(5);
+            assertThat(counts.top(3)).containsExactly(Map.entry("a", 2L), Map.entry("b", 2L), Map.entry("c", 2L));
+            assertThat(counts.top(5)).endsWith(Map.entry("d", 1L), Map.entry("e", 1L));
+        }
+    }
+}
@@ -2,30 +2,93 @@ package schrader.stream.test;
 
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
 import org.openjdk.jmh.annotations.Mode;
-import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
 
 import java.io.IOException;
 import java.nio.file.Files;
-import java.nio.file.Paths;
+import java.nio.file.Path;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+// Run with: gradle jmh -Pjmh="TopTenBenchmark -prof gc"
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@Warmup(iterations = 3, time = 10)
+@Measurement(iterations = 5, time = 10)
 public class TopTenBenchmark {
 
-    private Stream<String> fileLines(String path) {
+    @Param({"1000000"})
+    public int lines;
+
+    @Param({"false", "true"})
+    public boolean parallel;
+
+    private Path large;
+
+    @Setup
+    public void setUp() throws IOException {
+        large = Corpus.cached(lines);
+    }
+
+    private Stream<String> fileLines(Path path) {
         try {
-            return Files.lines(Paths.get(path));
+            Stream<String> lines = Files.lines(path);
+            return parallel ? lines.parallel() : lines;
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
+    // the original job, carried through to the top ten: regex split, boxed counts, full sort
+    @Benchmark
+    public List<Map.Entry<String, Long>> topten() {
+        try (Stream<String> lines = fileLines(large)) {
+            return lines
+                    .flatMap(line -> Arrays.stream(line.split("\\b")))
+                    .filter(word -> Character.isLetterOrDigit(word.charAt(0)))
+                    .map(String::toLowerCase)
+                    .collect(Collectors.groupingBy(Function.identity(), Collectors.counting()))
+                    .entrySet()
+                    .stream()
+                    .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                    .limit(10)
+                    .collect(Collectors.toList());
+        }
+    }
+
     @Benchmark
-    @BenchmarkMode(Mode.SampleTime)
-    public void topten(Blackhole blackhole) {
-        Arrays.stream(new String[]{"large.txt"})
-                .flatMap(this::fileLines)
-                .flatMap(line -> Arrays.stream(line.split("\\b")));
+    public List<Map.Entry<String, Long>> toptenExact() {
+        try (Stream<String> lines = fileLines(large)) {
+            return TopWords.exact(lines, 10);
+        }
+    }
+
+    @Benchmark
+    public List<Map.Entry<String, Long>> toptenSpilling() throws IOException {
+        try (Stream<String> lines = fileLines(large)) {
+            return TopWords.exact(lines, 10, 4 << 20);
+        }
+    }
+
+    @Benchmark
+    public List<Map.Entry<String, Long>> toptenApproximate() {
+        try (Stream<String> lines = fileLines(large)) {
+            return TopWords.approximate(lines, 10);
+        }
     }
 }
@@ -0,0 +1,39 @@
+package schrader.stream.test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collector;
+import java.util.stream.Stream;
+
+// Top-k word frequencies of a stream of lines, counted in per-thread tables merged at the end.
+final class TopWords {
+
+    static final int SKETCH_WIDTH = 1 << 16;
+    static final int SKETCH_DEPTH = 4;
+
+    private TopWords() {
+    }
+
+    static List<Map.Entry<String, Long>> exact(Stream<String> lines, int k) {
+        return lines.collect(Collector.of(WordCounts::new, WordCounts::addWords, WordCounts::merge,
+                counts -> counts.top(k), Collector.Characteristics.UNORDERED));
+    }
+
+    // exact within a heap budget, the counts beyond it are spilled to disk and merged into the top k
+    static List<Map.Entry<String, Long>> exact(Stream<String> lines, int k, long budget) throws IOException {
+        try (SpillingWordCounts counts = SpillingWordCounts.count(lines, budget)) {
+            return counts.top(k);
+        }
+    }
+
+    static List<Map.Entry<String, Long>> approximate(Stream<String> lines, int k) {
+        return approximate(lines, k, SKETCH_WIDTH, SKETCH_DEPTH);
+    }
+
+    // memory per thread is fixed by width * depth counters and 4 * k candidates
+    static List<Map.Entry<String, Long>> approximate(Stream<String> lines, int k, int width, int depth) {
+        return lines.collect(Collector.of(() -> new WordSketch(k, width, depth), WordSketch::addWords, WordSketch::merge,
+                WordSketch::top, Collector.Characteristics.UNORDERED));
+    }
+}
@@ -0,0 +1,59 @@
+package schrader.stream.test;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TopWordsTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void exactCountsWords() {
+        List<Map.Entry<String, Long>> top = TopWords.exact(Stream.of("Der Hund, der Hund!", "der Ball"), 2);
+        assertThat(top).containsExactly(Map.entry("der", 3L), Map.entry("hund", 2L));
+    }
+
+    @Test
+    void exactMatchesSortedGrouping() throws IOException {
+        Path file = dir.resolve("words.txt");
+        Corpus.write(file, 20_000, 1);
+        List<Map.Entry<String, Long>> expected;
+        try (Stream<String> lines = Files.lines(file)) {
+            expected = lines
+                    .flatMap(line -> Arrays.stream(line.split("\\W+")))
+                    .filter(word -> !word.isEmpty())
+                    .collect(Collectors.groupingBy(Function.identity(), Collectors.counting()))
+                    .entrySet()
+                    .stream()
+                    .sorted(Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                    .limit(25)
+                    .collect(Collectors.toList());
+        }
+        try (Stream<String> lines = Files.lines(file)) {
+            assertThat(TopWords.exact(lines.parallel(), 25)).isEqualTo(expected);
+        }
+        try (Stream<String> lines = Files.lines(file)) {
+            assertThat(TopWords.exact(lines.parallel(), 25, 64 << 10)).isEqualTo(expected);
+        }
+        try (Stream<String> lines = Files.lines(file)) {
+            List<Map.Entry<String, Long>> approximate = TopWords.approximate(lines.parallel(), 10);
+            assertThat(approximate).extracting(Map.Entry::getKey)
+                    .containsExactlyElementsOf(expected.stream().limit(10).map(Map.Entry::getKey).collect(Collectors.toList()));
+            assertThat(approximate).isSortedAccordingTo(Map.Entry.<String, Long>comparingByValue().reversed());
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package schrader.stream.test;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+// LEB128 varints for the sorted runs spilled to disk: 7 bits a byte, the high bit marks a byte
+// following. Zigzag maps small negative values to small unsigned ones.
+public final class Varint {
+
+    private Varint() {
+    }
+
+    public static void write(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    public static long read(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if (b < 0x80) {
+                return value;
+            }
+            if (shift >= 63) {
+                throw new IOException("varint longer than 10 bytes");
+            }
+        }
+    }
+
+    public static void writeSigned(DataOutput out, long value) throws IOException {
+        write(out, (value << 1) ^ (value >> 63));
+    }
+
+    public static long readSigned(DataInput in) throws IOException {
+        long value = read(in);
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
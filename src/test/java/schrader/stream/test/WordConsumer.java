@@ -0,0 +1,7 @@
+package schrader.stream.test;
+
+@FunctionalInterface
+interface WordConsumer {
+
+    void accept(String line, int from, int to);
+}
@@ -0,0 +1,252 @@
+package schrader.stream.test;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+// Open-addressing word -> count table. Words are lower-cased into a shared char arena, so
+// looking up a token that is already known allocates nothing.
+final class WordCounts {
+
+    private int[] slots; // index into starts/lengths/counts + 1, 0 marks a free slot
+    private int[] starts = new int[16];
+    private int[] lengths = new int[16];
+    private long[] counts = new long[16];
+    private long[] hashes = new long[16];
+    private char[] arena = new char[256];
+    private int arenaSize;
+    private int size;
+    private final WordConsumer adder = (line, from, to) -> add(line, from, to, 1);
+
+    WordCounts() {
+        slots = new int[64];
+    }
+
+    void addWords(String line) {
+        forEachWord(line, adder);
+    }
+
+    // splits at every non letter/digit char, like the word boundaries of "\\b"
+    static void forEachWord(String line, WordConsumer consumer) {
+        int length = line.length();
+        for (int i = 0; i < length; ) {
+            while (i < length && !Character.isLetterOrDigit(line.charAt(i))) {
+                i++;
+            }
+            int start = i;
+            while (i < length && Character.isLetterOrDigit(line.charAt(i))) {
+                i++;
+            }
+            if (i > start) {
+                consumer.accept(line, start, i);
+            }
+        }
+    }
+
+    void add(String s, int from, int to, long delta) {
+        int index = indexOf(s, from, to, hash(s, from, to), true);
+        counts[index] += delta;
+    }
+
+    void put(String s, int from, int to, long hash, long count) {
+        int index = indexOf(s, from, to, hash, true);
+        counts[index] = count;
+    }
+
+    // -1 if the word is unknown
+    long get(String s, int from, int to, long hash) {
+        int index = indexOf(s, from, to, hash, false);
+        return index < 0 ? -1 : counts[index];
+    }
+
+    WordCounts merge(WordCounts other) {
+        WordCounts into = other.size > size ? other : this;
+        WordCounts from = into == this ? other : this;
+        for (int i = 0; i < from.size; i++) {
+            int index = into.indexOf(from.arena, from.starts[i], from.lengths[i], from.hashes[i]);
+            into.counts[index] += from.counts[i];
+        }
+        return into;
+    }
+
+    int size() {
+        return size;
+    }
+
+    // heap taken by the table arrays, see SpillingWordCounts
+    long bytes() {
+        return 4L * slots.length + 24L * starts.length + 2L * arena.length;
+    }
+
+    String word(int index) {
+        return new String(arena, starts[index], lengths[index]);
+    }
+
+    long count(int index) {
+        return counts[index];
+    }
+
+    long hash(int index) {
+        return hashes[index];
+    }
+
+    // selects the k most frequent words through a bounded min-heap, ties ordered by word
+    List<Map.Entry<String, Long>> top(int k) {
+        int[] heap = new int[Math.min(k, size)];
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            if (n < heap.length) {
+                heap[n] = i;
+                siftUp(heap, n++);
+            } else if (n > 0 && compare(i, heap[0]) > 0) {
+                heap[0] = i;
+                siftDown(heap, n);
+            }
+        }
+        List<Map.Entry<String, Long>> top = new ArrayList<>(n);
+        for (; n > 0; n--) {
+            top.add(new AbstractMap.SimpleImmutableEntry<>(word(heap[0]), counts[heap[0]]));
+            heap[0] = heap[n - 1];
+            siftDown(heap, n - 1);
+        }
+        Collections.reverse(top);
+        return top;
+    }
+
+    static long hash(String s, int from, int to) {
+        long h = 0x811C9DC5L;
+        for (int i = from; i < to; i++) {
+            h = (h ^ Character.toLowerCase(s.charAt(i))) * 0x100000001B3L;
+        }
+        return h ^ (h >>> 29);
+    }
+
+    private int compare(int a, int b) {
+        int c = Long.compare(counts[a], counts[b]);
+        if (c != 0) {
+            return c;
+        }
+        // the lexicographically smaller word ranks higher
+        return Arrays.compare(arena, starts[b], starts[b] + lengths[b], arena, starts[a], starts[a] + lengths[a]);
+    }
+
+    private void siftUp(int[] heap, int i) {
+        while (i > 0) {
+            int parent = (i - 1) >> 1;
+            if (compare(heap[i], heap[parent]) >= 0) {
+                return;
+            }
+            swap(heap, i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int[] heap, int n) {
+        for (int i = 0; ; ) {
+            int child = 2 * i + 1;
+            if (child >= n) {
+                return;
+            }
+            if (child + 1 < n && compare(heap[child + 1], heap[child]) < 0) {
+                child++;
+            }
+            if (compare(heap[i], heap[child]) <= 0) {
+                return;
+            }
+            swap(heap, i, child);
+            i = child;
+        }
+    }
+
+    private static void swap(int[] heap, int i, int j) {
+        int t = heap[i];
+        heap[i] = heap[j];
+        heap[j] = t;
+    }
+
+    private int indexOf(String s, int from, int to, long hash, boolean insert) {
+        int length = to - from;
+        int mask = slots.length - 1;
+        for (int i = (int) hash & mask; ; i = (i + 1) & mask) {
+            int index = slots[i] - 1;
+            if (index < 0) {
+                if (!insert) {
+                    return -1;
+                }
+                index = append(hash, length);
+                for (int j = 0; j < length; j++) {
+                    arena[starts[index] + j] = Character.toLowerCase(s.charAt(from + j));
+                }
+                slots[i] = index + 1;
+                grow();
+                return index;
+            }
+            if (hashes[index] == hash && lengths[index] == length && regionEquals(index, s, from)) {
+                return index;
+            }
+        }
+    }
+
+    private int indexOf(char[] chars, int from, int length, long hash) {
+        int mask = slots.length - 1;
+        for (int i = (int) hash & mask; ; i = (i + 1) & mask) {
+            int index = slots[i] - 1;
+            if (index < 0) {
+                index = append(hash, length);
+                System.arraycopy(chars, from, arena, starts[index], length);
+                slots[i] = index + 1;
+                grow();
+                return index;
+            }
+            if (hashes[index] == hash && lengths[index] == length
+                    && Arrays.equals(arena, starts[index], starts[index] + length, chars, from, from + length)) {
+                return index;
+            }
+        }
+    }
+
+    private boolean regionEquals(int index, String s, int from) {
+        int start = starts[index];
+        for (int j = 0; j < lengths[index]; j++) {
+            if (arena[start + j] != Character.toLowerCase(s.charAt(from + j))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int append(long hash, int length) {
+        if (size == starts.length) {
+            starts = Arrays.copyOf(starts, size * 2);
+            lengths = Arrays.copyOf(lengths, size * 2);
+            counts = Arrays.copyOf(counts, size * 2);
+            hashes = Arrays.copyOf(hashes, size * 2);
+        }
+        if (arenaSize + length > arena.length) {
+            arena = Arrays.copyOf(arena, Math.max(arena.length * 2, arenaSize + length));
+        }
+        starts[size] = arenaSize;
+        lengths[size] = length;
+        hashes[size] = hash;
+        arenaSize += length;
+        return size++;
+    }
+
+    private void grow() {
+        if (size <= slots.length >> 1) {
+            return;
+        }
+        slots = new int[slots.length * 2];
+        int mask = slots.length - 1;
+        for (int index = 0; index < size; index++) {
+            int i = (int) hashes[index] & mask;
+            while (slots[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            slots[i] = index + 1;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package schrader.stream.test;
+
+import java.util.List;
+import java.util.Map;
+
+// Approximate top-k words in fixed memory: a count-min sketch (conservative update) estimates
+// every word, only words whose estimate can still reach the top k are kept as candidates.
+final class WordSketch {
+
+    private final int k;
+    private final int depth;
+    private final int mask;
+    private final long[] table;
+    private WordCounts candidates = new WordCounts();
+    private long threshold;
+    private final WordConsumer adder = this::add;
+
+    WordSketch(int k, int width, int depth) {
+        if (Integer.bitCount(width) != 1) {
+            throw new IllegalArgumentException("width must be a power of two: " + width);
+        }
+        this.k = k;
+        this.depth = depth;
+        this.mask = width - 1;
+        this.table = new long[width * depth];
+    }
+
+    void addWords(String line) {
+        WordCounts.forEachWord(line, adder);
+    }
+
+    void add(String line, int from, int to) {
+        long hash = WordCounts.hash(line, from, to);
+        long estimate = increment(hash);
+        if (estimate > threshold || candidates.get(line, from, to, hash) >= 0) {
+            candidates.put(line, from, to, hash, estimate);
+            if (candidates.size() > 4 * k) {
+                compact();
+            }
+        }
+    }
+
+    // sketches must have been created with the same width and depth
+    WordSketch merge(WordSketch other) {
+        for (int i = 0; i < table.length; i++) {
+            table[i] += other.table[i];
+        }
+        WordCounts union = new WordCounts();
+        reestimate(candidates, union);
+        reestimate(other.candidates, union);
+        candidates = union;
+        compact();
+        return this;
+    }
+
+    List<Map.Entry<String, Long>> top() {
+        return candidates.top(k);
+    }
+
+    private void reestimate(WordCounts from, WordCounts into) {
+        for (int i = 0; i < from.size(); i++) {
+            String word = from.word(i);
+            into.put(word, 0, word.length(), from.hash(i), estimate(from.hash(i)));
+        }
+    }
+
+    private void compact() {
+        List<Map.Entry<String, Long>> top = candidates.top(k);
+        candidates = new WordCounts();
+        for (Map.Entry<String, Long> e : top) {
+            String word = e.getKey();
+            candidates.put(word, 0, word.length(), WordCounts.hash(word, 0, word.length()), e.getValue());
+        }
+        threshold = top.size() < k ? 0 : top.get(top.size() - 1).getValue();
+    }
+
+    // conservative update: only the counters holding the current minimum are incremented
+    private long increment(long hash) {
+        long estimate = estimate(hash) + 1;
+        long step = (hash >>> 32) | 1;
+        for (int row = 0; row < depth; row++) {
+            int i = row * (mask + 1) + (int) ((hash + row * step) & mask);
+            if (table[i] < estimate) {
+                table[i] = estimate;
+            }
+        }
+        return estimate;
+    }
+
+    private long estimate(long hash) {
+        long min = Long.MAX_VALUE;
+        long step = (hash >>> 32) | 1;
+        for (int row = 0; row < depth; row++) {
+            min = Math.min(min, table[row * (mask + 1) + (int) ((hash + row * step) & mask)]);
+        }
+        return min;
+    }
+}
@@ -0,0 +1,31 @@
+package schrader.stream.test;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+// Ranks 0..n-1 drawn with probability proportional to 1 / (rank + 1), as words of natural language are.
+public final class Zipf {
+
+    private final double[] cdf;
+
+    public Zipf(int n) {
+        cdf = new double[n];
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            cdf[i] = sum += 1.0 / (i + 1);
+        }
+    }
+
+    public int next(SplittableRandom random) {
+        int rank = Arrays.binarySearch(cdf, random.nextDouble() * cdf[cdf.length - 1]);
+        return rank < 0 ? -rank - 1 : rank;
+    }
+
+    // an independent generator per block of a file, the same for any order the blocks are made in
+    public static SplittableRandom random(long seed, long block) {
+        long z = seed * 0x9E3779B97F4A7C15L + block;
+        z = (z ^ (z >>> 33)) * 0xFF51AFD7ED558CCDL;
+        z = (z ^ (z >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return new SplittableRandom(z ^ (z >>> 33));
+    }
+}
@@ -0,0 +1,44 @@
+package schrader.stream.test.parallel;
+
+// Apache common/combined log format:
+// 127.0.0.1 - frank [10/Oct/2000:13:55:36 -0700] "GET /apache_pb.gif HTTP/1.0" 500 2326
+// 5xx responses become level error, 4xx warn, everything else info. The message is the request line.
+final class AccessLog {
+
+    private AccessLog() {
+    }
+
+    static Entry parse(String line) {
+        int timeStart = line.indexOf('[');
+        int timeEnd = timeStart < 0 ? -1 : line.indexOf(']', timeStart);
+        if (timeEnd < 0 || timeEnd + 2 >= line.length() || line.charAt(timeEnd + 1) != ' ' || line.charAt(timeEnd + 2) != '"') {
+            return null;
+        }
+        int requestStart = timeEnd + 3;
+        int requestEnd = requestStart;
+        while (requestEnd < line.length() && line.charAt(requestEnd) != '"') {
+            requestEnd += line.charAt(requestEnd) == '\\' ? 2 : 1;
+        }
+        int status = requestEnd + 2;
+        if (status + 3 > line.length() || line.charAt(requestEnd + 1) != ' ') {
+            return null;
+        }
+        int code = 0;
+        for (int i = status; i < status + 3; i++) {
+            char c = line.charAt(i);
+            if (c < '0' || c > '9') {
+                return null;
+            }
+            code = code * 10 + (c - '0');
+        }
+        ParsedEntry entry = new ParsedEntry();
+        if (!Timestamps.parseAccessLog(line, timeStart + 1, timeEnd, entry)) {
+            return null;
+        }
+        entry.level = Levels.name(code >= 500 ? Levels.ERROR : code >= 400 ? Levels.WARN : Levels.INFO);
+        entry.line = line;
+        entry.messageStart = requestStart;
+        entry.messageEnd = requestEnd;
+        return entry;
+    }
+}
@@ -0,0 +1,38 @@
+package schrader.stream.test.parallel;
+
+import java.nio.charset.StandardCharsets;
+
+// CharSequence view on a byte array, index i is the byte at array index i. Lets the String based
+// scanners (Timestamps, Levels) read the ASCII fields of a log without decoding it.
+final class AsciiChars implements CharSequence {
+
+    private byte[] bytes;
+    private int length;
+
+    AsciiChars wrap(byte[] bytes, int length) {
+        this.bytes = bytes;
+        this.length = length;
+        return this;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return (char) (bytes[index] & 0xFF);
+    }
+
+    // decodes as UTF-8, the multi byte chars of a subsequence stay intact
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return new String(bytes, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String toString() {
+        return subSequence(0, length).toString();
+    }
+}
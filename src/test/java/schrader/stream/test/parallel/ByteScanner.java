@@ -0,0 +1,110 @@
+package schrader.stream.test.parallel;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+// Finds delimiter bytes (newlines, brackets, colons) in raw log bytes. SWAR compares eight bytes at
+// once in a long: the zero bytes of word ^ (delimiter * 0x0101..) are the matches. SCALAR is the
+// plain loop, chosen with -Dstream.scanner=scalar.
+enum ByteScanner {
+
+    SCALAR {
+        @Override
+        int indexOf(byte[] b, byte c, int from, int to) {
+            for (int i = from; i < to; i++) {
+                if (b[i] == c) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        int lastIndexOf(byte[] b, byte c, int from, int to) {
+            for (int i = to - 1; i >= from; i--) {
+                if (b[i] == c) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        int indexOf(ByteBuffer b, byte c, int from, int to) {
+            for (int i = from; i < to; i++) {
+                if (b.get(i) == c) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    },
+
+    SWAR {
+        @Override
+        int indexOf(byte[] b, byte c, int from, int to) {
+            long pattern = broadcast(c);
+            int i = from;
+            for (; i + Long.BYTES <= to; i += Long.BYTES) {
+                long matches = zeroBytes((long) LONGS.get(b, i) ^ pattern);
+                if (matches != 0) {
+                    return i + (Long.numberOfTrailingZeros(matches) >>> 3);
+                }
+            }
+            return SCALAR.indexOf(b, c, i, to);
+        }
+
+        @Override
+        int lastIndexOf(byte[] b, byte c, int from, int to) {
+            long pattern = broadcast(c);
+            int i = to - Long.BYTES;
+            for (; i >= from; i -= Long.BYTES) {
+                long matches = zeroBytes((long) LONGS.get(b, i) ^ pattern);
+                if (matches != 0) {
+                    return i + Long.BYTES - 1 - (Long.numberOfLeadingZeros(matches) >>> 3);
+                }
+            }
+            return SCALAR.lastIndexOf(b, c, from, i + Long.BYTES);
+        }
+
+        @Override
+        int indexOf(ByteBuffer b, byte c, int from, int to) {
+            long pattern = broadcast(c);
+            boolean little = b.order() == ByteOrder.LITTLE_ENDIAN;
+            int i = from;
+            for (; i + Long.BYTES <= to; i += Long.BYTES) {
+                long matches = zeroBytes(b.getLong(i) ^ pattern);
+                if (matches != 0) {
+                    return i + ((little ? Long.numberOfTrailingZeros(matches) : Long.numberOfLeadingZeros(matches)) >>> 3);
+                }
+            }
+            return SCALAR.indexOf(b, c, i, to);
+        }
+    };
+
+    static final ByteScanner DEFAULT = "scalar".equals(System.getProperty("stream.scanner")) ? SCALAR : SWAR;
+
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final long LOW_BITS = 0x7F7F7F7F7F7F7F7FL;
+
+    // first index of c in [from, to), -1 if there is none
+    abstract int indexOf(byte[] b, byte c, int from, int to);
+
+    // last index of c in [from, to), -1 if there is none
+    abstract int lastIndexOf(byte[] b, byte c, int from, int to);
+
+    // absolute indexes, independent of the buffer's position and limit
+    abstract int indexOf(ByteBuffer b, byte c, int from, int to);
+
+    private static long broadcast(byte c) {
+        return (c & 0xFFL) * 0x0101010101010101L;
+    }
+
+    // 0x80 in every zero byte of x and nothing else, without the borrow of the usual (x - 0x01..) & ~x
+    // which may also mark a 0x01 byte above a zero byte
+    private static long zeroBytes(long x) {
+        return ~(((x & LOW_BITS) + LOW_BITS) | x | LOW_BITS);
+    }
+}
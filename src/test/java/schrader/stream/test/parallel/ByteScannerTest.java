@@ -0,0 +1,56 @@
+package schrader.stream.test.parallel;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ByteScannerTest {
+
+    @Test
+    void swarFindsWhatTheLoopFinds() {
+        SplittableRandom random = new SplittableRandom(19);
+        // few distinct values, so neighbours of a match are often 0x01 or 0x80 away from the delimiter
+        byte[] values = {'\n', ']', ':', '[', 0x0B, 0x5C, 0x3B, 0x00, (byte) 0x8A, (byte) 0xFF, 'a'};
+        for (int round = 0; round < 2000; round++) {
+            byte[] b = new byte[random.nextInt(1, 40)];
+            for (int i = 0; i < b.length; i++) {
+                b[i] = values[random.nextInt(values.length)];
+            }
+            ByteBuffer big = ByteBuffer.wrap(b);
+            ByteBuffer little = ByteBuffer.wrap(b).order(ByteOrder.LITTLE_ENDIAN);
+            int from = random.nextInt(b.length);
+            int to = random.nextInt(from, b.length + 1);
+            for (byte c : new byte[]{'\n', ']', ':', 0x00, (byte) 0xFF}) {
+                int expected = ByteScanner.SCALAR.indexOf(b, c, from, to);
+                assertThat(ByteScanner.SWAR.indexOf(b, c, from, to)).isEqualTo(expected);
+                assertThat(ByteScanner.SWAR.indexOf(big, c, from, to)).isEqualTo(expected);
+                assertThat(ByteScanner.SWAR.indexOf(little, c, from, to)).isEqualTo(expected);
+                assertThat(ByteScanner.SWAR.lastIndexOf(b, c, from, to)).isEqualTo(ByteScanner.SCALAR.lastIndexOf(b, c, from, to));
+            }
+        }
+    }
+
+    @Test
+    void batchesParseAlikeWithEitherScanner() {
+        byte[] log = String.join("\n",
+                "[2019-02-12T10:15:30.123+01:00] [server:error] [main] [Consolidator] Connection refused",
+                "[2019-02-12T10:15:31+01:00] [a:b:warn] [pool-1] [Worker] done: 3 items",
+                "garbage",
+                "[2019-02-12T10:15:32+01:00] [server:info] [main] [Consolidator] \u00e4\u00f6\u00fc").getBytes(StandardCharsets.UTF_8);
+        EntryBatch scalar = new EntryBatch(16, ByteScanner.SCALAR);
+        EntryBatch swar = new EntryBatch(16, ByteScanner.SWAR);
+        assertThat(swar.fill(ByteBuffer.wrap(log), 0)).isEqualTo(scalar.fill(ByteBuffer.wrap(log), 0)).isEqualTo(log.length);
+        assertThat(swar.size()).isEqualTo(scalar.size()).isEqualTo(3);
+        for (int i = 0; i < swar.size(); i++) {
+            assertThat(swar.epochSecond(i)).isEqualTo(scalar.epochSecond(i));
+            assertThat(swar.level(i)).isEqualTo(scalar.level(i));
+            assertThat(swar.message(i)).isEqualTo(scalar.message(i));
+        }
+        assertThat(swar.level(1)).isEqualTo(Levels.WARN);
+    }
+}
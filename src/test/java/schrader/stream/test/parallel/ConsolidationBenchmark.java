@@ -0,0 +1,119 @@
+package schrader.stream.test.parallel;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// Run with: gradle jmh -Pjmh="ConsolidationBenchmark -prof gc"
+// One operation consolidates the whole generated file.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MINUTES)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@Warmup(iterations = 3, time = 10)
+@Measurement(iterations = 5, time = 10)
+public class ConsolidationBenchmark {
+
+    @Param({"100000", "1000000", "10000000"})
+    public int lines;
+
+    @Param({"false", "true"})
+    public boolean parallel;
+
+    private Path in;
+    private Path out;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        in = LogGenerator.cached(lines);
+        out = Files.createTempFile("consolidation", ".txt");
+        EntryColumns.open(in);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(out);
+    }
+
+    private Stream<String> lines() throws IOException {
+        Stream<String> lines = Files.lines(in);
+        return parallel ? lines.parallel() : lines;
+    }
+
+    @Benchmark
+    public Object fileStream() throws IOException {
+        try (Stream<String> lines = lines()) {
+            return Consolidations.entriesPerTimeStamp(lines);
+        }
+    }
+
+    @Benchmark
+    public Object fileStreamModified() throws IOException {
+        try (Stream<String> lines = lines()) {
+            return Consolidations.countPerTimeStamp(lines);
+        }
+    }
+
+    // the source and writer of testConsolidate
+    @Benchmark
+    public void consolidate() throws IOException {
+        try (Stream<String> lines = MappedLines.lines(in); CountsWriter writer = new CountsWriter(out)) {
+            writer.write(Consolidations.countPerEpochSecond(parallel ? lines.parallel() : lines.sequential()));
+        }
+    }
+
+    @Benchmark
+    public void consolidateBatched() throws IOException {
+        try (Stream<MappedLines.Chunk> chunks = MappedLines.chunks(in); PrintWriter pw = new PrintWriter(Files.newBufferedWriter(out))) {
+            Consolidations.countPerEpochSecondBatched(parallel ? chunks : chunks.sequential()).forEach((k, v) -> pw.println(k + " " + v));
+        }
+    }
+
+    // the source and writer of testConsolidateWithoutOrdering, the chunks counted in any order
+    @Benchmark
+    public void consolidateWithoutOrdering() throws IOException {
+        try (Stream<MappedLines.Chunk> chunks = MappedLines.chunks(in); CountsWriter writer = new CountsWriter(out)) {
+            Consolidations.writeCountPerEpochSecond(parallel ? chunks.unordered() : chunks.sequential(), writer);
+        }
+    }
+
+    @Benchmark
+    public Object topErrorTemplates() throws IOException {
+        try (Stream<String> lines = lines()) {
+            return Consolidations.topErrorTemplates(lines, WindowSpec.tumbling(Duration.ofMinutes(1)), 10);
+        }
+    }
+
+    // the query plans parallel execution on its own, whatever the param
+    @Benchmark
+    public void consolidateQuery() throws IOException {
+        try (CountsWriter writer = new CountsWriter(out)) {
+            writer.write(LogQuery.from(in).level(Levels.ERROR).groupBy(ChronoUnit.SECONDS).count());
+        }
+    }
+
+    // the error counts from the columnar sidecar built during setup
+    @Benchmark
+    public Object consolidateFromColumns() throws IOException {
+        return EntryColumns.open(in).countPerEpochSecond(Levels.ERROR);
+    }
+}
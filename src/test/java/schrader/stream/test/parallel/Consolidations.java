@@ -0,0 +1,140 @@
+package schrader.stream.test.parallel;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.AbstractMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.SortedMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// The error consolidation pipelines of ParallelStreamTest, shared with the benchmarks.
+// Sequential or parallel execution is up to the stream passed in.
+final class Consolidations {
+
+    private Consolidations() {
+    }
+
+    static Stream<Entry> errors(Stream<String> lines) {
+        return errors(lines, Entry.Format.LOG_ENTRY);
+    }
+
+    static Stream<Entry> errors(Stream<String> lines, Entry.Format format) {
+        EntryParser parser = EntryParsers.get(format);
+        return lines
+                .map(parser::parse)
+                .filter(Objects::nonNull)
+                .filter(Entry::isError);
+    }
+
+    // testFileStream
+    static List<Map.Entry<Long, Integer>> entriesPerTimeStamp(Stream<String> lines) {
+        return errors(lines)
+                .map(Entry::detach) // the lists hold the entries, not their lines
+                .collect(Collectors.groupingByConcurrent(Entry::getTimeStamp)) // groups log entries by timeStamp as Map<Long, List<LogEntry>>
+                .entrySet()
+                .stream()
+                .map(e -> new AbstractMap.SimpleEntry<>(e.getKey().getEpochSecond(), e.getValue().size())) // <= Map.Entry<Long, Integer>
+                .sorted(Map.Entry.comparingByKey())
+                .collect(Collectors.toList());
+    }
+
+    // testFileStreamModified
+    static List<Map.Entry<Instant, Long>> countPerTimeStamp(Stream<String> lines) {
+        return errors(lines)
+                .collect(Collectors.groupingByConcurrent(Entry::getTimeStamp, Collectors.counting())) // => Map<Instant, Long>
+                .entrySet()
+                .stream()
+                .sorted(Map.Entry.comparingByKey())
+                .collect(Collectors.toList());
+    }
+
+    // testConsolidateWithoutOrdering
+    static Map<Instant, Long> countPerTimeStampUnordered(Stream<String> lines) {
+        return errors(lines)
+                // Group entries by timeStamp:
+                // (1) 'groupingBy' generates a Map<Long, List<LogEnry>
+                // (2) 'Collectors.counting() generates a Map<Long, Long> by counting the entries in 'List<LogEnry>'
+                // (3) 'LinkedHashMap::new' keeps the insertion order only, which is no time order
+                //     once the lines are parsed in parallel, see writeCountPerEpochSecond
+                .collect(Collectors.groupingBy(Entry::getTimeStamp, LinkedHashMap::new, Collectors.counting()));
+    }
+
+    // testConsolidate
+    static SortedCounts countPerEpochSecond(Stream<String> lines) {
+        return errors(lines)
+                // count entries per epoch second in primitive tables, the result comes sorted by second
+                .collect(LongCountMap.counting(Entry::getEpochSecond));
+    }
+
+    // testConsolidate with metrics: the read, parse, filter and group stages of countPerEpochSecond
+    static SortedCounts countPerEpochSecond(Stream<String> lines, PipelineMetrics metrics) {
+        return metrics.lines(lines)
+                .map(metrics.parser(EntryParsers.get(Entry.Format.LOG_ENTRY))::parse)
+                .filter(Objects::nonNull)
+                .filter(metrics.timeFilter(PipelineMetrics.Stage.FILTER, Entry::isError))
+                .collect(metrics.time(PipelineMetrics.Stage.GROUP, LongCountMap.counting(Entry::getEpochSecond)));
+    }
+
+    // testConsolidateBatched: parses chunks into reusable EntryBatch columns, no Entry per line
+    static SortedCounts countPerEpochSecondBatched(Stream<MappedLines.Chunk> chunks) {
+        return chunks
+                .map(Consolidations::countErrorsPerEpochSecond)
+                .reduce(LongCountMap::merge)
+                .orElseGet(LongCountMap::new)
+                .sorted();
+    }
+
+    // testConsolidateWithoutOrdering: the chunks of a time ordered log are counted in whatever order
+    // they finish, the writer restores the order and joins the seconds split at chunk boundaries
+    static void writeCountPerEpochSecond(Stream<MappedLines.Chunk> chunks, CountsWriter out) {
+        chunks.forEach(chunk -> {
+            try {
+                out.part(chunk.offset, chunk.offset + chunk.size(), countErrorsPerEpochSecond(chunk).sorted());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    // errors per millisecond within a heap budget: the counts beyond it are spilled to sorted runs on
+    // disk and merged into the writer
+    static void writeCountPerEpochMilli(Stream<String> lines, long budget, CountsWriter out) throws IOException {
+        try (SpillingCounts counts = SpillingCounts.count(errors(lines),
+                e -> e.epochSecond * 1_000 + e.nano / 1_000_000, budget)) {
+            counts.writeTo(out);
+        }
+    }
+
+    // which errors: the n most frequent error message templates per window
+    static SortedMap<Long, List<Map.Entry<String, Long>>> topErrorTemplates(Stream<String> lines, WindowSpec spec, int n) {
+        return errors(lines).collect(ErrorTemplates.top(spec, n));
+    }
+
+    // counts per level and window, the chunks are parsed into EntryBatch columns
+    static WindowCounts countPerWindow(Stream<MappedLines.Chunk> chunks, WindowSpec spec) {
+        LongCountMap bucketCounts = chunks
+                .map(chunk -> {
+                    LongCountMap counts = new LongCountMap();
+                    new EntryBatch().forEachBatch(chunk.buffer(), 0, batch -> {
+                        for (int i = 0; i < batch.size(); i++) {
+                            counts.add(WindowAggregator.key(spec, batch.epochSecond(i), batch.level(i)), 1);
+                        }
+                    });
+                    return counts;
+                })
+                .reduce(LongCountMap::merge)
+                .orElseGet(LongCountMap::new);
+        return WindowAggregator.windows(spec, bucketCounts);
+    }
+
+    static LongCountMap countErrorsPerEpochSecond(MappedLines.Chunk chunk) {
+        LongCountMap counts = new LongCountMap();
+        new EntryBatch().forEachBatch(chunk.buffer(), 0, batch -> batch.countPerEpochSecond(Levels.ERROR, counts));
+        return counts;
+    }
+}
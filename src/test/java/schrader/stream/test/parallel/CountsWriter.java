@@ -0,0 +1,222 @@
+package schrader.stream.test.parallel;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+// Writes "key count" lines in ascending key order. The digits are formatted straight into a reusable
+// direct buffer which goes to the channel in blocks, no String per line and no PrintWriter lock per call.
+// The last WINDOW keys are held back sorted, equal keys are summed into one line: that joins a second
+// split across two chunks and restores the order of keys a little late, e.g. at the boundary of chunks
+// of a log not quite in time order. A key behind the window falls back to buffering the rest, which
+// close() merges with the lines written before.
+final class CountsWriter implements Closeable {
+
+    static final int BLOCK_SIZE = 1 << 20;
+    static final int WINDOW = 1024; // a power of two
+    // the line separator of the PrintWriter.println this replaces
+    private static final byte[] SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+    private static final int MAX_LINE = 2 * 20 + 1 + SEPARATOR.length; // two signed longs, blank and separator
+
+    private final Path out;
+    private FileChannel channel;
+    private final ByteBuffer block = ByteBuffer.allocateDirect(BLOCK_SIZE);
+    private final byte[] digits = new byte[20];
+    private long lines;
+
+    // the held back keys in ascending order, a ring of size entries from head
+    private final long[] windowKeys = new long[WINDOW];
+    private final long[] windowCounts = new long[WINDOW];
+    private int head;
+    private int size;
+    private boolean written;
+    private long lastKey; // the last key written
+    private LongCountMap late; // the counts buffered since a key came behind the window
+
+    // parts which arrived before their predecessors, by first byte offset
+    private final Map<Long, Part> parts = new HashMap<>();
+    private long nextPart;
+
+    CountsWriter(Path out) throws IOException {
+        this.out = out;
+        this.channel = FileChannel.open(out, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    void write(SortedCounts counts) throws IOException {
+        for (int i = 0; i < counts.size(); i++) {
+            write(counts.key(i), counts.count(i));
+        }
+    }
+
+    void write(long key, long count) throws IOException {
+        if (late != null) {
+            late.add(key, count);
+            return;
+        }
+        if (written && key <= lastKey) {
+            late = new LongCountMap();
+            for (int i = 0; i < size; i++) {
+                late.add(windowKeys[slot(i)], windowCounts[slot(i)]);
+            }
+            size = 0;
+            late.add(key, count);
+            return;
+        }
+        // the position of the key in the window, searched from the end where ordered keys go
+        int i = size;
+        while (i > 0 && windowKeys[slot(i - 1)] > key) {
+            i--;
+        }
+        if (i > 0 && windowKeys[slot(i - 1)] == key) {
+            windowCounts[slot(i - 1)] += count;
+            return;
+        }
+        if (size == WINDOW) {
+            if (i == 0) { // before all held back keys
+                format(key, count);
+                return;
+            }
+            format(windowKeys[head], windowCounts[head]);
+            head = slot(1);
+            size--;
+            i--;
+        }
+        for (int j = size; j > i; j--) {
+            windowKeys[slot(j)] = windowKeys[slot(j - 1)];
+            windowCounts[slot(j)] = windowCounts[slot(j - 1)];
+        }
+        windowKeys[slot(i)] = key;
+        windowCounts[slot(i)] = count;
+        size++;
+    }
+
+    // Counts of the input bytes [from, to), e.g. of one MappedLines.Chunk. Parts may come in any order
+    // and from any thread, they are written as soon as all preceding bytes are. The input is expected
+    // to be about ordered by key, i.e. a part's keys are not much smaller than the keys of the parts
+    // before, else the writer falls back to buffering.
+    synchronized void part(long from, long to, SortedCounts counts) throws IOException {
+        parts.put(from, new Part(to, counts));
+        for (Part next = parts.remove(nextPart); next != null; next = parts.remove(nextPart)) {
+            write(next.counts);
+            nextPart = next.to;
+        }
+    }
+
+    // lines written so far, not counting the ones held back in the window or buffered
+    long lines() {
+        return lines;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (!parts.isEmpty()) {
+                throw new IllegalStateException("missing part at byte " + nextPart);
+            }
+            for (; size > 0; size--) {
+                format(windowKeys[head], windowCounts[head]);
+                head = slot(1);
+            }
+            flush();
+            if (late != null) {
+                mergeLate();
+            }
+        } finally {
+            channel.close();
+        }
+    }
+
+    // rewrites the output as the merge of the lines written and the buffered counts
+    private void mergeLate() throws IOException {
+        SortedCounts counts = late.sorted();
+        late = null;
+        Path merged = Files.createTempFile(out.toAbsolutePath().getParent(), out.getFileName().toString(), ".tmp");
+        try (BufferedReader in = Files.newBufferedReader(out)) {
+            channel.close();
+            channel = FileChannel.open(merged, StandardOpenOption.WRITE);
+            lines = 0;
+            int i = 0;
+            for (String line = in.readLine(); line != null; line = in.readLine()) {
+                int blank = line.indexOf(' ');
+                long key = Long.parseLong(line.substring(0, blank));
+                long count = Long.parseLong(line.substring(blank + 1));
+                for (; i < counts.size() && counts.key(i) < key; i++) {
+                    format(counts.key(i), counts.count(i));
+                }
+                if (i < counts.size() && counts.key(i) == key) {
+                    count += counts.count(i++);
+                }
+                format(key, count);
+            }
+            for (; i < counts.size(); i++) {
+                format(counts.key(i), counts.count(i));
+            }
+            flush();
+            channel.close();
+            Files.move(merged, out, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(merged);
+        }
+    }
+
+    private int slot(int i) {
+        return (head + i) & (WINDOW - 1);
+    }
+
+    private void format(long key, long count) throws IOException {
+        written = true;
+        lastKey = key;
+        if (block.remaining() < MAX_LINE) {
+            flush();
+        }
+        put(key);
+        block.put((byte) ' ');
+        put(count);
+        block.put(SEPARATOR);
+        lines++;
+    }
+
+    // decimal digits of value, works on the negative value so Long.MIN_VALUE needs no special case
+    private void put(long value) {
+        if (value < 0) {
+            block.put((byte) '-');
+        } else {
+            value = -value;
+        }
+        int i = digits.length;
+        do {
+            digits[--i] = (byte) ('0' - value % 10);
+            value /= 10;
+        } while (value != 0);
+        block.put(digits, i, digits.length - i);
+    }
+
+    private void flush() throws IOException {
+        block.flip();
+        while (block.hasRemaining()) {
+            channel.write(block);
+        }
+        block.clear();
+    }
+
+    private static final class Part {
+
+        final long to;
+        final SortedCounts counts;
+
+        Part(long to, SortedCounts counts) {
+            this.to = to;
+            this.counts = counts;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package schrader.stream.test.parallel;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CountsWriterTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void formatsLikeStringConcatenation() throws IOException {
+        Path out = dir.resolve("out.txt");
+        long[] keys = {Long.MIN_VALUE, -10, -1, 0, 7, 1550000000, Long.MAX_VALUE};
+        List<String> expected = new ArrayList<>();
+        try (CountsWriter writer = new CountsWriter(out)) {
+            for (int i = 0; i < keys.length; i++) {
+                long count = i * 1_000_003L - 3;
+                writer.write(keys[i], count);
+                expected.add(keys[i] + " " + count);
+            }
+        }
+        assertThat(Files.readAllLines(out)).isEqualTo(expected);
+    }
+
+    @Test
+    void spansBlocksAndJoinsEqualKeys() throws IOException {
+        Path out = dir.resolve("out.txt");
+        try (CountsWriter writer = new CountsWriter(out)) {
+            for (long key = 0; key < 200_000; key++) {
+                writer.write(key, 1);
+                writer.write(key, 2);
+            }
+            assertThat(writer.lines()).isEqualTo(200_000 - CountsWriter.WINDOW);
+        }
+        List<String> lines = Files.readAllLines(out);
+        assertThat(lines).hasSize(200_000);
+        assertThat(lines.get(123_456)).isEqualTo("123456 3");
+    }
+
+    @Test
+    void sortsKeysWithinTheWindow() throws IOException {
+        Path out = dir.resolve("out.txt");
+        try (CountsWriter writer = new CountsWriter(out)) {
+            writer.write(2, 1);
+            writer.write(1, 1);
+            writer.write(3, 1);
+            writer.write(2, 1);
+        }
+        assertThat(Files.readAllLines(out)).containsExactly("1 1", "2 2", "3 1");
+    }
+
+    @Test
+    void mergesKeysBehindTheWindowOnClose() throws IOException {
+        Path out = dir.resolve("out.txt");
+        Map<Long, Long> expected = new TreeMap<>();
+        try (CountsWriter writer = new CountsWriter(out)) {
+            for (long key = 0; key < 10 * CountsWriter.WINDOW; key++) {
+                long late = key % 100 == 0 ? key / 10 : key; // far behind the written lines
+                writer.write(late, 1);
+                expected.merge(late, 1L, Long::sum);
+            }
+        }
+        assertThat(Files.readAllLines(out)).containsExactlyElementsOf(expected.entrySet().stream()
+                .map(e -> e.getKey() + " " + e.getValue()).collect(Collectors.toList()));
+        try (Stream<Path> files = Files.list(dir)) {
+            assertThat(files).containsExactly(out);
+        }
+    }
+
+    @Test
+    void partsInAnyOrderMatchTheSequentialResult() throws IOException {
+        Path log = dir.resolve("test.log");
+        LogGenerator.write(log, 100_000, 12);
+        Path ordered = dir.resolve("ordered.txt");
+        try (Stream<String> lines = Files.lines(log); CountsWriter writer = new CountsWriter(ordered)) {
+            writer.write(Consolidations.countPerEpochSecond(lines));
+        }
+        Path parts = dir.resolve("parts.txt");
+        try (CountsWriter writer = new CountsWriter(parts)) {
+            List<MappedLines.Chunk> chunks;
+            try (FileChannel channel = FileChannel.open(log)) {
+                chunks = MappedLines.chunks(channel, 4096).collect(Collectors.toList());
+            }
+            assertThat(chunks).hasSizeGreaterThan(100);
+            Collections.reverse(chunks);
+            Consolidations.writeCountPerEpochSecond(chunks.parallelStream().unordered(), writer);
+        }
+        assertThat(Files.readAllLines(parts)).isEqualTo(Files.readAllLines(ordered)).isNotEmpty();
+    }
+}
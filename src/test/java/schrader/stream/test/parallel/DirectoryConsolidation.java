@@ -0,0 +1,134 @@
+package schrader.stream.test.parallel;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.zip.GZIPInputStream;
+
+// Consolidates the errors per second of all (rotated, possibly gzipped) logs of a directory.
+// Every file is read and decompressed on a thread of its own, virtual if the JVM has them, and
+// hands batches of lines to a fixed number of CPU bound parse workers. A semaphore bounds the
+// batches in flight, so fast readers wait for the parsers instead of filling the heap.
+final class DirectoryConsolidation {
+
+    static final int BATCH_LINES = 8192;
+
+    private final Entry.Format format;
+    private final int parseWorkers;
+    private final int maxPendingBatches;
+
+    DirectoryConsolidation() {
+        this(Entry.Format.LOG_ENTRY, Runtime.getRuntime().availableProcessors(), 4 * Runtime.getRuntime().availableProcessors());
+    }
+
+    DirectoryConsolidation(Entry.Format format, int parseWorkers, int maxPendingBatches) {
+        this.format = format;
+        this.parseWorkers = parseWorkers;
+        this.maxPendingBatches = maxPendingBatches;
+    }
+
+    SortedCounts consolidate(Path dir, String glob) throws IOException, InterruptedException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, glob)) {
+            stream.forEach(files::add);
+        }
+        ExecutorService readers = perFileExecutor();
+        ExecutorService parsers = Executors.newFixedThreadPool(parseWorkers);
+        Semaphore pending = new Semaphore(maxPendingBatches);
+        try {
+            List<Future<LongCountMap>> perFile = new ArrayList<>();
+            for (Path file : files) {
+                perFile.add(readers.submit(() -> consolidate(file, parsers, pending)));
+            }
+            LongCountMap counts = new LongCountMap();
+            for (Future<LongCountMap> f : perFile) {
+                counts = counts.merge(get(f));
+            }
+            return counts.sorted();
+        } finally {
+            readers.shutdownNow();
+            parsers.shutdownNow();
+        }
+    }
+
+    private LongCountMap consolidate(Path file, ExecutorService parsers, Semaphore pending) throws Exception {
+        EntryParser parser = EntryParsers.get(format);
+        List<Future<LongCountMap>> batches = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(open(file), StandardCharsets.UTF_8), 1 << 16)) {
+            List<String> batch = new ArrayList<>(BATCH_LINES);
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                batch.add(line);
+                if (batch.size() == BATCH_LINES) {
+                    batches.add(submit(batch, parser, parsers, pending));
+                    batch = new ArrayList<>(BATCH_LINES);
+                }
+            }
+            batches.add(submit(batch, parser, parsers, pending));
+        }
+        LongCountMap counts = new LongCountMap();
+        for (Future<LongCountMap> f : batches) {
+            counts = counts.merge(get(f));
+        }
+        return counts;
+    }
+
+    private static Future<LongCountMap> submit(List<String> batch, EntryParser parser, ExecutorService parsers,
+                                               Semaphore pending) throws InterruptedException {
+        pending.acquire();
+        return parsers.submit(() -> {
+            try {
+                LongCountMap counts = new LongCountMap();
+                for (String line : batch) {
+                    Entry entry = parser.parse(line);
+                    if (entry != null && entry.isError()) {
+                        counts.add(entry.getEpochSecond(), 1);
+                    }
+                }
+                return counts;
+            } finally {
+                pending.release();
+            }
+        });
+    }
+
+    private static InputStream open(Path file) throws IOException {
+        InputStream in = Files.newInputStream(file);
+        return file.getFileName().toString().endsWith(".gz") ? new GZIPInputStream(in, 1 << 16) : in;
+    }
+
+    private static <T> T get(Future<T> future) throws IOException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    // a virtual thread per task on JVMs that have them, a cached pool of daemon threads otherwise
+    static ExecutorService perFileExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(task -> {
+                Thread thread = new Thread(task, "log-reader");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package schrader.stream.test.parallel;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DirectoryConsolidationTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void consolidatesPlainAndGzippedLogs() throws IOException, InterruptedException {
+        Path generated = dir.resolve("generated.txt");
+        LogGenerator.write(generated, 60_000, 11);
+        List<String> lines = Files.readAllLines(generated);
+        Files.write(dir.resolve("app.log"), lines.subList(40_000, 60_000));
+        gzip(dir.resolve("app.log.1.gz"), lines.subList(20_000, 40_000));
+        gzip(dir.resolve("app.log.2.gz"), lines.subList(0, 20_000));
+
+        SortedCounts counts = new DirectoryConsolidation(Entry.Format.LOG_ENTRY, 3, 2).consolidate(dir, "app.log*");
+
+        assertThat(counts.stream().collect(Collectors.toList()))
+                .isEqualTo(Consolidations.countPerEpochSecond(lines.stream()).stream().collect(Collectors.toList()));
+    }
+
+    private static void gzip(Path file, List<String> lines) throws IOException {
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(file))) {
+            for (String line : lines) {
+                out.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+        }
+    }
+}
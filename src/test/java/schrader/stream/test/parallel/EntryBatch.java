@@ -0,0 +1,239 @@
+package schrader.stream.test.parallel;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+// LOG_ENTRY lines of a byte buffer parsed into reusable struct-of-arrays columns instead of one
+// Entry object per line. fill() copies the next block of lines into a reusable byte array and
+// parses it into the same columns, filters and groupings run over the primitive columns.
+final class EntryBatch {
+
+    static final int DEFAULT_CAPACITY = 8192;
+    private static final int BLOCK_SIZE = 1 << 20;
+
+    private final long[] epochSeconds;
+    private final int[] nanos;
+    private final byte[] levels;
+    private final int[] levelStarts;
+    private final int[] levelEnds;
+    private final int[] lineStarts;
+    private final int[] lineEnds;
+    private final int[] messageStarts;
+    private int size;
+    private int lines; // read by the last fill()
+    private int decoded; // timestamps decoded by the last fill()
+    private int levelMask = -1; // bit per Levels code kept by fill()
+
+    private byte[] bytes = new byte[BLOCK_SIZE];
+    private final AsciiChars chars = new AsciiChars();
+    private final Entry timeStamp = new ParsedEntry(); // scratch for the decoder
+    private final TimestampDecoder timestamps = new TimestampDecoder();
+    private final ByteScanner scanner;
+
+    EntryBatch() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    EntryBatch(int capacity) {
+        this(capacity, ByteScanner.DEFAULT);
+    }
+
+    EntryBatch(int capacity, ByteScanner scanner) {
+        this.scanner = scanner;
+        epochSeconds = new long[capacity];
+        nanos = new int[capacity];
+        levels = new byte[capacity];
+        levelStarts = new int[capacity];
+        levelEnds = new int[capacity];
+        lineStarts = new int[capacity];
+        lineEnds = new int[capacity];
+        messageStarts = new int[capacity];
+    }
+
+    // fill() keeps the lines of these levels only, the others are dropped on the level bytes before
+    // their timestamp is decoded (see LogQuery)
+    EntryBatch levels(byte... levels) {
+        levelMask = 0;
+        for (byte level : levels) {
+            levelMask |= 1 << level;
+        }
+        return this;
+    }
+
+    // Parses the lines from position 'from' of the source until the batch is full, lines of
+    // another shape are skipped. Returns the position after the last line read.
+    int fill(ByteBuffer source, int from) {
+        size = 0;
+        lines = 0;
+        decoded = 0;
+        int remaining = source.limit() - from;
+        int length = Math.min(remaining, bytes.length);
+        source.duplicate().position(from).get(bytes, 0, length);
+        // the block ends with the last complete line, unless it is the end of the source
+        int limit = length;
+        if (length < remaining) {
+            limit = scanner.lastIndexOf(bytes, (byte) '\n', 0, length) + 1;
+            if (limit == 0) { // a line longer than the block
+                bytes = new byte[bytes.length * 2];
+                return fill(source, from);
+            }
+        }
+        chars.wrap(bytes, limit);
+        int p = 0;
+        while (p < limit && size < levels.length) {
+            int end = scanner.indexOf(bytes, (byte) '\n', p, limit);
+            if (end < 0) {
+                end = limit;
+            }
+            int next = end < limit ? end + 1 : end;
+            if (end > p && bytes[end - 1] == '\r') {
+                end--;
+            }
+            parse(p, end);
+            lines++;
+            p = next;
+        }
+        return from + p;
+    }
+
+    // Fills the batch from position 'from' to the limit of the source, the action reads the batch
+    // after each fill.
+    void forEachBatch(ByteBuffer source, int from, Consumer<EntryBatch> action) {
+        for (int p = from; p < source.limit(); ) {
+            p = fill(source, p);
+            action.accept(this);
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    int lines() {
+        return lines;
+    }
+
+    int decoded() {
+        return decoded;
+    }
+
+    long epochSecond(int i) {
+        return epochSeconds[i];
+    }
+
+    int nano(int i) {
+        return nanos[i];
+    }
+
+    byte level(int i) {
+        return levels[i];
+    }
+
+    int count(byte level) {
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (levels[i] == level) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    void countPerEpochSecond(byte level, LongCountMap into) {
+        for (int i = 0; i < size; i++) {
+            if (levels[i] == level) {
+                into.add(epochSeconds[i], 1);
+            }
+        }
+    }
+
+    String line(int i) {
+        return chars.subSequence(lineStarts[i], lineEnds[i]).toString();
+    }
+
+    String message(int i) {
+        return chars.subSequence(messageStarts[i], lineEnds[i]).toString();
+    }
+
+    // Entry objects for code that still needs them, built from the columns: only the line is
+    // decoded, for the message
+    Stream<Entry> stream() {
+        return IntStream.range(0, size).mapToObj(this::entry);
+    }
+
+    Entry entry(int i) {
+        ParsedEntry entry = new ParsedEntry();
+        entry.epochSecond = epochSeconds[i];
+        entry.nano = nanos[i];
+        entry.level = levels[i] == Levels.UNKNOWN ? chars.subSequence(levelStarts[i], levelEnds[i]).toString()
+                : Levels.name(levels[i]);
+        entry.line = line(i);
+        entry.messageStart = isAscii(lineStarts[i], messageStarts[i]) ? messageStarts[i] - lineStarts[i]
+                : chars.subSequence(lineStarts[i], messageStarts[i]).length();
+        entry.messageEnd = entry.line.length();
+        return entry;
+    }
+
+    private boolean isAscii(int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (bytes[i] < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // byte for byte the checks of LogEntry.scan
+    private void parse(int start, int end) {
+        byte[] b = bytes;
+        if (end == start || b[start] != '[') {
+            return;
+        }
+        int timeStampEnd = scanner.indexOf(b, (byte) ']', start + 1, end);
+        if (!opensField(b, timeStampEnd, end)) {
+            return;
+        }
+        int levelEnd = scanner.indexOf(b, (byte) ']', timeStampEnd + 3, end);
+        int colon = levelEnd < 0 ? -1 : scanner.lastIndexOf(b, (byte) ':', start, levelEnd);
+        if (colon <= timeStampEnd + 2) {
+            return;
+        }
+        byte level = Levels.code(chars, colon + 1, levelEnd);
+        if ((levelMask & 1 << level) == 0) {
+            return;
+        }
+        int close = levelEnd;
+        for (int field = 0; field < 2; field++) {
+            if (!opensField(b, close, end)) {
+                return;
+            }
+            close = scanner.indexOf(b, (byte) ']', close + 3, end);
+        }
+        if (close < 0 || close + 2 >= end || !isWhitespace(b[close + 1])) {
+            return;
+        }
+        decoded++;
+        if (!timestamps.decode(chars, start + 1, timeStampEnd, timeStamp)) {
+            return;
+        }
+        epochSeconds[size] = timeStamp.epochSecond;
+        nanos[size] = timeStamp.nano;
+        levels[size] = level;
+        levelStarts[size] = colon + 1;
+        levelEnds[size] = levelEnd;
+        lineStarts[size] = start;
+        lineEnds[size] = end;
+        messageStarts[size++] = close + 2;
+    }
+
+    private static boolean opensField(byte[] b, int close, int end) {
+        return close > 0 && close + 2 < end && isWhitespace(b[close + 1]) && b[close + 2] == '[';
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return Character.isWhitespace((char) (b & 0xFF));
+    }
+}
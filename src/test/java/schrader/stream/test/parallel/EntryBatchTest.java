@@ -0,0 +1,64 @@
+package schrader.stream.test.parallel;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EntryBatchTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void batchesMatchEntries() {
+        String text = "[2019-02-12T10:15:30.123+01:00] [server:error] [main] [Consolidator] Verbindung \u00fcberlastet\r\n"
+                + "Zeile 2\n"
+                + "[2019-02-12T10:15:31+01:00] [a:b:notice] [main] [Consolidator] started\n"
+                + "[2019-02-12T10:15:32Z] [server:info] [main] [Consolidator] done";
+        ByteBuffer buffer = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+        EntryBatch batch = new EntryBatch(2);
+        int p = batch.fill(buffer, 0);
+        assertThat(batch.size()).isEqualTo(2); // the second line is read but skipped
+        assertThat(batch.level(0)).isEqualTo(Levels.ERROR);
+        assertThat(batch.level(1)).isEqualTo(Levels.UNKNOWN);
+        assertThat(batch.message(0)).isEqualTo("Verbindung \u00fcberlastet");
+        Entry entry = Entry.parse(text.substring(0, text.indexOf('\r')), Entry.Format.LOG_ENTRY);
+        assertThat(batch.epochSecond(0)).isEqualTo(entry.epochSecond);
+        assertThat(batch.nano(0)).isEqualTo(entry.nano);
+
+        assertThat(batch.stream().map(e -> e.level)).containsExactly("error", "notice");
+        assertThat(batch.stream().map(Entry::getMessage)).containsExactly("Verbindung \u00fcberlastet", "started");
+        assertThat(batch.stream().findFirst().orElseThrow().getTimeStamp()).isEqualTo(entry.getTimeStamp());
+
+        p = batch.fill(buffer, p);
+        assertThat(p).isEqualTo(buffer.limit());
+        assertThat(batch.size()).isEqualTo(1);
+        assertThat(batch.level(0)).isEqualTo(Levels.INFO);
+    }
+
+    @Test
+    void batchedConsolidationMatchesStreamed() throws IOException {
+        Path log = dir.resolve("app.log");
+        LogGenerator.write(log, 50_000, 9);
+        List<Map.Entry<Long, Long>> expected;
+        try (Stream<String> lines = Files.lines(log)) {
+            expected = Consolidations.countPerEpochSecond(lines).stream().collect(Collectors.toList());
+        }
+        try (FileChannel channel = FileChannel.open(log)) {
+            SortedCounts batched = Consolidations.countPerEpochSecondBatched(MappedLines.chunks(channel, 100_000));
+            assertThat(batched.stream().collect(Collectors.toList())).isEqualTo(expected);
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package schrader.stream.test.parallel;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// Parsed log entries as a columnar sidecar file "<log>.cols", written once and memory-mapped by
+// later queries, which scan the primitive columns instead of parsing text again:
+//
+//   header:  magic, version, source size, source mtime (millis), rows
+//   columns: epoch nanos (long), message offset in the source file (long), level code (byte)
+//
+// The sidecar is rebuilt whenever size or mtime of the log differ from the header.
+final class EntryColumns {
+
+    private static final int MAGIC = 0x434F4C53; // "COLS"
+    private static final int VERSION = 2; // 2: timestamp offsets applied
+    private static final int HEADER = 32;
+    private static final int SEGMENT_SHIFT = 27; // rows per mapped region of a long column
+
+    private final long rows;
+    private final LongBuffer[] epochNanos;
+    private final LongBuffer[] messageOffsets;
+    private final ByteBuffer[] levels;
+
+    private EntryColumns(FileChannel channel) throws IOException {
+        ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER);
+        rows = header.getLong(24);
+        epochNanos = mapLongs(channel, HEADER);
+        messageOffsets = mapLongs(channel, HEADER + rows * Long.BYTES);
+        levels = new ByteBuffer[segments()];
+        long position = HEADER + 2 * rows * Long.BYTES;
+        for (int s = 0; s < levels.length; s++) {
+            levels[s] = channel.map(FileChannel.MapMode.READ_ONLY, position + ((long) s << SEGMENT_SHIFT), segmentRows(s));
+        }
+    }
+
+    static Path sidecar(Path log) {
+        return log.resolveSibling(log.getFileName() + ".cols");
+    }
+
+    // maps the sidecar of the log, (re)building it first if it is missing or stale
+    static EntryColumns open(Path log) throws IOException {
+        Path cols = sidecar(log);
+        if (!isCurrent(log, cols)) {
+            build(log, cols);
+        }
+        try (FileChannel channel = FileChannel.open(cols, StandardOpenOption.READ)) {
+            return new EntryColumns(channel);
+        }
+    }
+
+    static boolean isCurrent(Path log, Path cols) throws IOException {
+        if (Files.notExists(cols) || Files.size(cols) < HEADER) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(cols, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER);
+            channel.read(header, 0);
+            return header.getInt(0) == MAGIC && header.getInt(4) == VERSION
+                    && header.getLong(8) == Files.size(log)
+                    && header.getLong(16) == Files.getLastModifiedTime(log).toMillis();
+        }
+    }
+
+    static void build(Path log, Path cols) throws IOException {
+        long size = Files.size(log);
+        long mtime = Files.getLastModifiedTime(log).toMillis();
+        List<Block> blocks;
+        try (Stream<MappedLines.Chunk> chunks = MappedLines.chunks(log)) {
+            blocks = chunks.map(Block::new).collect(Collectors.toList());
+        }
+        long rows = blocks.stream().mapToLong(b -> b.rows).sum();
+        Path tmp = Files.createTempFile(cols.toAbsolutePath().getParent(), cols.getFileName().toString(), ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER).putInt(MAGIC).putInt(VERSION).putLong(size).putLong(mtime).putLong(rows);
+            write(channel, header.flip());
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.nativeOrder());
+            for (Block b : blocks) {
+                for (int i = 0; i < b.rows; i++) {
+                    flushIfFull(channel, buffer, Long.BYTES).putLong(b.epochNanos[i]);
+                }
+            }
+            for (Block b : blocks) {
+                for (int i = 0; i < b.rows; i++) {
+                    flushIfFull(channel, buffer, Long.BYTES).putLong(b.messageOffsets[i]);
+                }
+            }
+            for (Block b : blocks) {
+                for (int i = 0; i < b.rows; i++) {
+                    flushIfFull(channel, buffer, 1).put(b.levels[i]);
+                }
+            }
+            write(channel, buffer.flip());
+        }
+        Files.move(tmp, cols, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    long rows() {
+        return rows;
+    }
+
+    long epochNanos(long row) {
+        return epochNanos[(int) (row >>> SEGMENT_SHIFT)].get((int) (row & ((1 << SEGMENT_SHIFT) - 1)));
+    }
+
+    long messageOffset(long row) {
+        return messageOffsets[(int) (row >>> SEGMENT_SHIFT)].get((int) (row & ((1 << SEGMENT_SHIFT) - 1)));
+    }
+
+    byte level(long row) {
+        return levels[(int) (row >>> SEGMENT_SHIFT)].get((int) (row & ((1 << SEGMENT_SHIFT) - 1)));
+    }
+
+    // entries per level code, see Levels
+    long[] countPerLevel() {
+        long[] counts = new long[Levels.COUNT];
+        for (ByteBuffer segment : levels) {
+            for (int i = 0, n = segment.limit(); i < n; i++) {
+                counts[segment.get(i)]++;
+            }
+        }
+        return counts;
+    }
+
+    SortedCounts countPerEpochSecond(byte level) {
+        LongCountMap counts = new LongCountMap();
+        for (int s = 0; s < levels.length; s++) {
+            ByteBuffer segmentLevels = levels[s];
+            LongBuffer segmentNanos = epochNanos[s];
+            for (int i = 0, n = segmentLevels.limit(); i < n; i++) {
+                if (segmentLevels.get(i) == level) {
+                    counts.add(Math.floorDiv(segmentNanos.get(i), 1_000_000_000L), 1);
+                }
+            }
+        }
+        return counts.sorted();
+    }
+
+    // {min, max} epoch nanos, empty for an empty log
+    long[] timeRange() {
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (LongBuffer segment : epochNanos) {
+            for (int i = 0, n = segment.limit(); i < n; i++) {
+                long nanos = segment.get(i);
+                min = Math.min(min, nanos);
+                max = Math.max(max, nanos);
+            }
+        }
+        return rows == 0 ? new long[0] : new long[]{min, max};
+    }
+
+    private int segments() {
+        return (int) ((rows + (1 << SEGMENT_SHIFT) - 1) >>> SEGMENT_SHIFT);
+    }
+
+    private int segmentRows(int segment) {
+        return (int) Math.min(1 << SEGMENT_SHIFT, rows - ((long) segment << SEGMENT_SHIFT));
+    }
+
+    private LongBuffer[] mapLongs(FileChannel channel, long position) throws IOException {
+        LongBuffer[] segments = new LongBuffer[segments()];
+        for (int s = 0; s < segments.length; s++) {
+            segments[s] = channel.map(FileChannel.MapMode.READ_ONLY, position + ((long) s << SEGMENT_SHIFT) * Long.BYTES,
+                    (long) segmentRows(s) * Long.BYTES).order(ByteOrder.nativeOrder()).asLongBuffer();
+        }
+        return segments;
+    }
+
+    private static ByteBuffer flushIfFull(FileChannel channel, ByteBuffer buffer, int needed) throws IOException {
+        if (buffer.remaining() < needed) {
+            write(channel, buffer.flip());
+            buffer.clear();
+        }
+        return buffer;
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    // the parsed rows of one chunk
+    private static final class Block {
+
+        int rows;
+        long[] epochNanos = new long[1024];
+        long[] messageOffsets = new long[1024];
+        byte[] levels = new byte[1024];
+
+        Block(MappedLines.Chunk chunk) {
+            chunk.forEachLine((line, offset) -> {
+                LogEntry entry = LogEntry.scan(line);
+                if (entry != null) {
+                    add(entry, offset + utf8Length(line, entry.messageStart));
+                }
+            });
+        }
+
+        private void add(Entry entry, long messageOffset) {
+            if (rows == levels.length) {
+                epochNanos = Arrays.copyOf(epochNanos, rows * 2);
+                messageOffsets = Arrays.copyOf(messageOffsets, rows * 2);
+                levels = Arrays.copyOf(levels, rows * 2);
+            }
+            epochNanos[rows] = entry.epochSecond * 1_000_000_000L + entry.nano;
+            messageOffsets[rows] = messageOffset;
+            levels[rows++] = Levels.code(entry.level);
+        }
+
+        private static long utf8Length(String s, int end) {
+            long length = 0;
+            for (int i = 0; i < end; i++) {
+                char c = s.charAt(i);
+                if (c < 0x80) {
+                    length += 1;
+                } else if (c < 0x800) {
+                    length += 2;
+                } else if (Character.isHighSurrogate(c)) {
+                    length += 4;
+                    i++;
+                } else {
+                    length += 3;
+                }
+            }
+            return length;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package schrader.stream.test.parallel;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EntryColumnsTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void columnsMatchParsedText() throws IOException {
+        Path log = dir.resolve("app.log");
+        LogGenerator.write(log, 50_000, 3);
+        EntryColumns columns = EntryColumns.open(log);
+        List<String> lines = Files.readAllLines(log);
+
+        assertThat(columns.rows()).isEqualTo(lines.size());
+        assertThat(columns.countPerEpochSecond(Levels.ERROR).stream().collect(Collectors.toList()))
+                .isEqualTo(Consolidations.countPerEpochSecond(lines.stream()).stream().collect(Collectors.toList()));
+        Map<String, Long> perLevel = lines.stream().map(LogEntry::scan)
+                .collect(Collectors.groupingBy(e -> e.level, Collectors.counting()));
+        long[] counts = columns.countPerLevel();
+        perLevel.forEach((level, count) -> assertThat(counts[Levels.code(level)]).isEqualTo(count));
+
+        Entry last = LogEntry.scan(lines.get(lines.size() - 1));
+        try (FileChannel channel = FileChannel.open(log)) {
+            ByteBuffer message = ByteBuffer.allocate(last.getMessage().length());
+            channel.read(message, columns.messageOffset(columns.rows() - 1));
+            assertThat(new String(message.array(), StandardCharsets.UTF_8)).isEqualTo(last.getMessage());
+        }
+        assertThat(columns.timeRange()[1]).isEqualTo(last.epochSecond * 1_000_000_000L + last.nano);
+    }
+
+    @Test
+    void staleSidecarIsRebuilt() throws IOException {
+        Path log = dir.resolve("app.log");
+        LogGenerator.write(log, 1_000, 3);
+        long rows = EntryColumns.open(log).rows();
+        assertThat(EntryColumns.isCurrent(log, EntryColumns.sidecar(log))).isTrue();
+
+        Files.write(log, List.of(Files.readAllLines(log).get(0)), StandardOpenOption.APPEND);
+        assertThat(EntryColumns.isCurrent(log, EntryColumns.sidecar(log))).isFalse();
+        assertThat(EntryColumns.open(log).rows()).isEqualTo(rows + 1);
+    }
+}
@@ -0,0 +1,8 @@
+package schrader.stream.test.parallel;
+
+@FunctionalInterface
+interface EntryParser {
+
+    // null if the line is not of the parser's format
+    Entry parse(String line);
+}
@@ -0,0 +1,78 @@
+package schrader.stream.test.parallel;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+// Parser registry keyed by Entry.Format, with detection of the format from the first lines of a log.
+final class EntryParsers {
+
+    static final int SNIFF_LINES = 16;
+
+    private static volatile Map<Entry.Format, EntryParser> parsers = new EnumMap<>(Entry.Format.class);
+
+    static {
+        register(Entry.Format.LOG_ENTRY, LogEntry::scan);
+        register(Entry.Format.LOG_ENTRY_REGEX, LogEntry::match);
+        register(Entry.Format.JSON, JsonLines::parse);
+        register(Entry.Format.LOGFMT, Logfmt::parse);
+        register(Entry.Format.APACHE_ACCESS, AccessLog::parse);
+    }
+
+    private EntryParsers() {
+    }
+
+    static EntryParser get(Entry.Format format) {
+        EntryParser parser = parsers.get(format);
+        if (parser == null) {
+            throw new IllegalArgumentException("no parser for " + format);
+        }
+        return parser;
+    }
+
+    // replaces the parser of the format
+    static synchronized void register(Entry.Format format, EntryParser parser) {
+        Map<Entry.Format, EntryParser> copy = new EnumMap<>(Entry.Format.class);
+        copy.putAll(parsers);
+        copy.put(format, parser);
+        parsers = copy;
+    }
+
+    // the format parsing most of the sample lines, the regex reference is never chosen
+    static Optional<Entry.Format> sniff(List<String> sample) {
+        Entry.Format best = null;
+        int bestCount = 0;
+        for (Map.Entry<Entry.Format, EntryParser> e : parsers.entrySet()) {
+            if (e.getKey() == Entry.Format.LOG_ENTRY_REGEX) {
+                continue;
+            }
+            int count = 0;
+            for (String line : sample) {
+                if (e.getValue().parse(line) != null) {
+                    count++;
+                }
+            }
+            if (count > bestCount) {
+                best = e.getKey();
+                bestCount = count;
+            }
+        }
+        return Optional.ofNullable(best);
+    }
+
+    static Optional<Entry.Format> sniff(Path file) throws IOException {
+        List<String> sample = new ArrayList<>(SNIFF_LINES);
+        try (BufferedReader reader = Files.newBufferedReader(file)) {
+            for (String line; sample.size() < SNIFF_LINES && (line = reader.readLine()) != null; ) {
+                sample.add(line);
+            }
+        }
+        return sniff(sample);
+    }
+}
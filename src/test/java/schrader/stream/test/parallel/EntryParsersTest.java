@@ -0,0 +1,71 @@
+package schrader.stream.test.parallel;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EntryParsersTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void json() {
+        Entry entry = Entry.parse("{\"ts\": \"2019-02-12T10:15:30.5Z\", \"ctx\": {\"a\": [1, \"}\"]}, \"level\": \"ERROR\","
+                + " \"msg\": \"connection \\\"db\\\" refused\"}", Entry.Format.JSON);
+        assertThat(entry.getTimeStamp()).isEqualTo(Instant.parse("2019-02-12T10:15:30.5Z"));
+        assertThat(entry.isError()).isTrue();
+        assertThat(entry.getMessage()).isEqualTo("connection \"db\" refused");
+        assertThat(Entry.parse("{\"time\": \"2019-02-12T10:15:30Z\", \"level\": \"error\", \"msg\": \"a\\tb\\n\\u00e9\\\\\"}",
+                Entry.Format.JSON).getMessage()).isEqualTo("a\tb\n\u00e9\\");
+        assertThat(Entry.parse("{\"time\": \"2019-02-12T10:15:30Z\", \"level\": \"error\", \"msg\": \"\\x\"}",
+                Entry.Format.JSON)).isNull();
+        assertThat(Entry.parse("{\"level\": \"info\"}", Entry.Format.JSON)).isNull();
+        assertThat(Entry.parse("[2019-02-12T10:15:30Z] [a:error] [b] [c] msg", Entry.Format.JSON)).isNull();
+    }
+
+    @Test
+    void logfmt() {
+        Entry entry = Entry.parse("time=2019-02-12T10:15:30Z level=Warning verbose msg=\"disk 91% full\" host=a",
+                Entry.Format.LOGFMT);
+        assertThat(entry.getTimeStamp()).isEqualTo(Instant.parse("2019-02-12T10:15:30Z"));
+        assertThat(entry.level).isEqualTo("warn");
+        assertThat(entry.getMessage()).isEqualTo("disk 91% full");
+        assertThat(Entry.parse("time=2019-02-12T10:15:30Z level=error msg=\"disk \\\"sda\\\" full\" path=C:\\tmp",
+                Entry.Format.LOGFMT).getMessage()).isEqualTo("disk \"sda\" full");
+        assertThat(Entry.parse("time=2019-02-12T10:15:30Z level=error msg=C:\\tmp", Entry.Format.LOGFMT).getMessage())
+                .isEqualTo("C:\\tmp");
+        assertThat(Entry.parse("level=error msg=x", Entry.Format.LOGFMT)).isNull();
+    }
+
+    @Test
+    void apacheAccess() {
+        Entry entry = Entry.parse("127.0.0.1 - frank [10/Oct/2000:13:55:36 -0700] \"GET /apache_pb.gif HTTP/1.0\" 503 2326",
+                Entry.Format.APACHE_ACCESS);
+        assertThat(entry.getTimeStamp()).isEqualTo(Instant.parse("2000-10-10T20:55:36Z"));
+        assertThat(entry.isError()).isTrue();
+        assertThat(entry.getMessage()).isEqualTo("GET /apache_pb.gif HTTP/1.0");
+        assertThat(Entry.parse("127.0.0.1 - - [10/Oct/2000:13:55:36 -0700] \"GET / HTTP/1.0\" 404 0",
+                Entry.Format.APACHE_ACCESS).level).isEqualTo("warn");
+        assertThat(Entry.parse("127.0.0.1 - - [10/Okt/2000:13:55:36 -0700] \"GET / HTTP/1.0\" 200 0",
+                Entry.Format.APACHE_ACCESS)).isNull();
+    }
+
+    @Test
+    void sniffsFormat() throws IOException {
+        Path log = dir.resolve("app.log");
+        LogGenerator.write(log, 100, 1);
+        assertThat(EntryParsers.sniff(log)).contains(Entry.Format.LOG_ENTRY);
+        assertThat(EntryParsers.sniff(List.of(
+                "time=2019-02-12T10:15:30Z level=info msg=started",
+                "time=2019-02-12T10:15:31Z level=error msg=failed",
+                "garbage"))).contains(Entry.Format.LOGFMT);
+        assertThat(EntryParsers.sniff(List.of("Zeile 1", "Zeile 2"))).isEmpty();
+    }
+}
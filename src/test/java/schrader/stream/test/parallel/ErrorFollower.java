@@ -0,0 +1,173 @@
+package schrader.stream.test.parallel;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+// Follows a growing log: every follow() parses only the bytes appended since the last run and
+// rewrites the "epochSecond count" output from the first second the new errors touch. Offset,
+// counts and a fingerprint of the log head are kept in a state file next to the output.
+//
+// A log that got shorter or whose head changed has been truncated or rotated, it is read again
+// from its start. The counts of the old content are kept.
+final class ErrorFollower {
+
+    private static final int MAGIC = 0x4C4F4746; // "LOGF"
+    private static final int FINGERPRINT_LENGTH = 1024;
+    private static final String SEPARATOR = System.lineSeparator();
+
+    private final Path log;
+    private final Path out;
+    private final Path state;
+
+    private long offset;
+    private int fingerprintLength;
+    private long fingerprint;
+    private long outputLength;
+    private LongCountMap counts = new LongCountMap();
+
+    ErrorFollower(Path log, Path out) throws IOException {
+        this.log = log;
+        this.out = out;
+        this.state = out.resolveSibling(out.getFileName() + ".state");
+        if (Files.exists(state)) {
+            load();
+        }
+    }
+
+    // returns the number of newly parsed bytes
+    long follow() throws IOException {
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < offset || fingerprintLength > 0 && fingerprint(channel, fingerprintLength) != fingerprint) {
+                offset = 0;
+                fingerprintLength = 0;
+            }
+            if (fingerprintLength < FINGERPRINT_LENGTH && size > fingerprintLength) {
+                fingerprintLength = (int) Math.min(size, FINGERPRINT_LENGTH);
+                fingerprint = fingerprint(channel, fingerprintLength);
+            }
+            long end = lineEnd(channel, offset, size);
+            SortedCounts delta;
+            long chunkSize = MappedLines.chunkSize(end - offset, ForkJoinPool.getCommonPoolParallelism());
+            try (Stream<String> lines = MappedLines.chunks(channel, offset, end, chunkSize).flatMap(MappedLines.Chunk::lines)) {
+                delta = Consolidations.countPerEpochSecond(lines);
+            }
+            long parsed = end - offset;
+            offset = end;
+            if (delta.size() > 0 || Files.notExists(out)) {
+                delta.forEach(counts::add);
+                write(delta.size() > 0 ? delta.key(0) : Long.MAX_VALUE);
+            }
+            save();
+            return parsed;
+        }
+    }
+
+    // rewrites the output from the line of 'from' on, the lines before are unchanged
+    private void write(long from) throws IOException {
+        SortedCounts all = counts.sorted();
+        long prefix = 0;
+        int i = 0;
+        for (; i < all.size() && all.key(i) < from; i++) {
+            prefix += lineLength(all.key(i), all.count(i));
+        }
+        if (Files.notExists(out) || Files.size(out) != outputLength) {
+            prefix = 0;
+            i = 0;
+        }
+        try (FileChannel channel = FileChannel.open(out, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            channel.truncate(prefix);
+            channel.position(prefix);
+            BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(channel), StandardCharsets.US_ASCII));
+            long length = prefix;
+            for (; i < all.size(); i++) {
+                writer.write(all.key(i) + " " + all.count(i) + SEPARATOR);
+                length += lineLength(all.key(i), all.count(i));
+            }
+            writer.flush();
+            outputLength = length;
+        }
+    }
+
+    private static long lineLength(long key, long count) {
+        return Long.toString(key).length() + 1 + Long.toString(count).length() + SEPARATOR.length();
+    }
+
+    // end of the last complete line, a partially written line is left for the next run
+    private static long lineEnd(FileChannel channel, long from, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        for (long end = size; end > from; ) {
+            long start = Math.max(from, end - buffer.capacity());
+            buffer.clear().limit((int) (end - start));
+            MappedLines.readFully(channel, buffer, start);
+            for (int i = (int) (end - start) - 1; i >= 0; i--) {
+                if (buffer.get(i) == '\n') {
+                    return start + i + 1;
+                }
+            }
+            end = start;
+        }
+        return from;
+    }
+
+    private static long fingerprint(FileChannel channel, int length) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate(length);
+        while (head.hasRemaining() && channel.read(head, head.position()) > 0) {
+        }
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < head.position(); i++) {
+            hash = (hash ^ head.get(i)) * 0x100000001B3L;
+        }
+        return hash;
+    }
+
+    private void load() throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(state)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("not a follower state: " + state);
+            }
+            offset = in.readLong();
+            fingerprintLength = in.readInt();
+            fingerprint = in.readLong();
+            outputLength = in.readLong();
+            int size = in.readInt();
+            counts = new LongCountMap(size);
+            for (int i = 0; i < size; i++) {
+                counts.add(in.readLong(), in.readLong());
+            }
+        }
+    }
+
+    private void save() throws IOException {
+        Path tmp = state.resolveSibling(state.getFileName() + ".tmp");
+        try (DataOutputStream o = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            o.writeInt(MAGIC);
+            o.writeLong(offset);
+            o.writeInt(fingerprintLength);
+            o.writeLong(fingerprint);
+            o.writeLong(outputLength);
+            SortedCounts all = counts.sorted();
+            o.writeInt(all.size());
+            for (int i = 0; i < all.size(); i++) {
+                o.writeLong(all.key(i));
+                o.writeLong(all.count(i));
+            }
+        }
+        Files.move(tmp, state, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
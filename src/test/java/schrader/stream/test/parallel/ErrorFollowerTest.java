@@ -0,0 +1,65 @@
+package schrader.stream.test.parallel;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ErrorFollowerTest {
+
+    @TempDir
+    Path dir;
+
+    private List<String> consolidated(List<String> lines) {
+        return Consolidations.countPerEpochSecond(lines.stream()).stream()
+                .map(e -> e.getKey() + " " + e.getValue())
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    void followsAppendedLines() throws IOException {
+        Path generated = dir.resolve("generated.log");
+        LogGenerator.write(generated, 20_000, 7);
+        List<String> lines = Files.readAllLines(generated);
+        Path log = dir.resolve("app.log");
+        Path out = dir.resolve("errors.txt");
+
+        Files.write(log, lines.subList(0, 10_000));
+        assertThat(new ErrorFollower(log, out).follow()).isEqualTo(Files.size(log));
+        assertThat(Files.readAllLines(out)).isEqualTo(consolidated(lines.subList(0, 10_000)));
+
+        // a partially written last line waits for the next run
+        String last = lines.get(lines.size() - 1);
+        Files.write(log, lines.subList(10_000, lines.size() - 1), StandardOpenOption.APPEND);
+        Files.writeString(log, last.substring(0, 20), StandardOpenOption.APPEND);
+        new ErrorFollower(log, out).follow();
+        assertThat(Files.readAllLines(out)).isEqualTo(consolidated(lines.subList(0, lines.size() - 1)));
+        Files.writeString(log, last.substring(20) + System.lineSeparator(), StandardOpenOption.APPEND);
+        new ErrorFollower(log, out).follow();
+        assertThat(Files.readAllLines(out)).isEqualTo(consolidated(lines));
+        assertThat(new ErrorFollower(log, out).follow()).isZero();
+    }
+
+    @Test
+    void rereadsRotatedLog() throws IOException {
+        Path generated = dir.resolve("generated.log");
+        LogGenerator.write(generated, 20_000, 7);
+        List<String> lines = Files.readAllLines(generated);
+        Path log = dir.resolve("app.log");
+        Path out = dir.resolve("errors.txt");
+
+        Files.write(log, lines.subList(0, 15_000));
+        ErrorFollower follower = new ErrorFollower(log, out);
+        follower.follow();
+        Files.write(log, lines.subList(15_000, 20_000)); // rotated: a new, shorter file
+        follower.follow();
+        assertThat(Files.readAllLines(out)).isEqualTo(consolidated(lines));
+    }
+}
@@ -0,0 +1,203 @@
+package schrader.stream.test.parallel;
+
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Collector;
+
+// Counts message templates per window in Space-Saving summaries of fixed capacity. An entry is
+// counted once, into the summary of its bucket, whatever the number of windows holding it. A window
+// is closed once it ends a whole window before the newest entry and starts a whole window after the
+// oldest one: then the summaries of its buckets are merged and shrunk to the n counters reported,
+// and the buckets no open window holds are dropped. So only the buckets at the edges are held at
+// the full capacity. A parallel stream's containers each count a contiguous stretch of the log, so
+// the windows within it are complete when closed, while the edge buckets are merged with the
+// neighbouring containers first. Late entries count into the n counters of their closed windows.
+// The finisher reports the top n per window start.
+final class ErrorTemplates {
+
+    private final WindowSpec spec;
+    private final int n;
+    private final int capacity;
+    private final NavigableMap<Long, SpaceSaving> buckets = new TreeMap<>(); // of the open windows
+    private final NavigableMap<Long, SpaceSaving> windows = new TreeMap<>(); // closed, by start bucket
+    private final StringBuilder template = new StringBuilder();
+    private long oldest = Long.MAX_VALUE; // bucket
+    private long newest = Long.MIN_VALUE;
+    private long closedFrom; // the start buckets of the closed windows, empty at first
+    private long closedTo;
+    private long lastBucket = Long.MIN_VALUE; // the bucket counted into last, none of its windows closed
+    private SpaceSaving last;
+
+    ErrorTemplates(WindowSpec spec, int n, int capacity) {
+        this.spec = spec;
+        this.n = n;
+        this.capacity = capacity;
+    }
+
+    // capacity counters per window, ten times n keeps the top n estimates close to the exact counts
+    static Collector<Entry, ErrorTemplates, SortedMap<Long, List<Map.Entry<String, Long>>>> top(WindowSpec spec, int n) {
+        return top(spec, n, 10 * n);
+    }
+
+    static Collector<Entry, ErrorTemplates, SortedMap<Long, List<Map.Entry<String, Long>>>> top(WindowSpec spec, int n,
+                                                                                                 int capacity) {
+        return Collector.of(() -> new ErrorTemplates(spec, n, capacity),
+                ErrorTemplates::add,
+                ErrorTemplates::merge,
+                templates -> templates.top(n),
+                Collector.Characteristics.UNORDERED);
+    }
+
+    void add(Entry entry) {
+        template.setLength(0);
+        MessageTemplates.normalize(entry.line, entry.messageStart, entry.messageEnd, template);
+        long bucket = spec.bucket(entry.getEpochSecond());
+        if (bucket == lastBucket) {
+            last.add(template);
+            return;
+        }
+        // a sliding window holds the entry if it starts within the last spec.buckets() buckets
+        long first = bucket - spec.buckets() + 1;
+        boolean late = bucket >= closedFrom && first < closedTo;
+        if (late && !addLate(first, bucket)) {
+            return;
+        }
+        SpaceSaving summary = buckets.computeIfAbsent(bucket, b -> new SpaceSaving(capacity));
+        summary.add(template);
+        if (!late) { // the next entries of the bucket take the short cut
+            last = summary;
+            lastBucket = bucket;
+        }
+        if (bucket < oldest || bucket > newest) {
+            oldest = Math.min(oldest, bucket);
+            newest = Math.max(newest, bucket);
+            close();
+        }
+    }
+
+    // counts the template into the closed windows holding the bucket, false if all of them are
+    private boolean addLate(long first, long bucket) {
+        boolean open = false;
+        for (long start = first; start <= bucket; start++) {
+            if (closed(start)) {
+                windows.computeIfAbsent(start, s -> new SpaceSaving(n)).add(template);
+            } else {
+                open = true;
+            }
+        }
+        return open;
+    }
+
+    // The windows closed by one container only take the other's buckets they hold, a window closed
+    // by both is merged as is. The windows in between the two closed ranges are closed anew.
+    ErrorTemplates merge(ErrorTemplates other) {
+        foldBuckets(other);
+        other.foldBuckets(this);
+        other.windows.forEach((start, window) -> windows.merge(start, window, SpaceSaving::merge));
+        other.buckets.forEach((bucket, summary) -> buckets.merge(bucket, summary, SpaceSaving::merge));
+        oldest = Math.min(oldest, other.oldest);
+        newest = Math.max(newest, other.newest);
+        closedTo = closedFrom;
+        close();
+        return this;
+    }
+
+    private void foldBuckets(ErrorTemplates other) {
+        other.buckets.forEach((bucket, summary) -> {
+            for (long start = bucket - spec.buckets() + 1; start <= bucket; start++) {
+                if (closed(start) && !other.closed(start)) {
+                    windows.computeIfAbsent(start, s -> new SpaceSaving(n)).merge(summary);
+                }
+            }
+        });
+    }
+
+    // the closed range only widens, so just the windows added to it are built
+    private void close() {
+        if (oldest > newest) {
+            return;
+        }
+        long from = oldest + spec.buckets() + 1;
+        long to = newest - 2L * spec.buckets() + 1;
+        if (from >= to) {
+            return;
+        }
+        if (closedFrom >= closedTo) {
+            closeWindows(from, to);
+        } else {
+            closeWindows(from, closedFrom);
+            closeWindows(closedTo, to);
+        }
+        closedFrom = from;
+        closedTo = to;
+        lastBucket = Long.MIN_VALUE;
+        last = null;
+        // the buckets all of whose windows are closed
+        long firstDropped = from + spec.buckets() - 1;
+        if (firstDropped < to) {
+            buckets.subMap(firstDropped, to).clear();
+        }
+    }
+
+    private void closeWindows(long from, long to) {
+        for (long start = from; start < to; start++) {
+            Long next = buckets.ceilingKey(start);
+            if (next == null) {
+                return;
+            }
+            if (next >= start + spec.buckets()) {
+                start = next - spec.buckets(); // on to the first window holding the next bucket
+            } else if (!windows.containsKey(start)) {
+                windows.put(start, window(start).shrink(n));
+            }
+        }
+    }
+
+    private boolean closed(long start) {
+        return start >= closedFrom && start < closedTo;
+    }
+
+    // the summary of the window, merged from its buckets
+    private SpaceSaving window(long start) {
+        NavigableMap<Long, SpaceSaving> of = buckets.subMap(start, true, start + spec.buckets() - 1, true);
+        if (spec.buckets() == 1) {
+            return of.firstEntry().getValue(); // dropped when the window closes
+        }
+        SpaceSaving window = new SpaceSaving(capacity);
+        of.values().forEach(window::merge);
+        return window;
+    }
+
+    // the start buckets of the windows not closed yet
+    private SortedSet<Long> openWindowStarts() {
+        SortedSet<Long> starts = new TreeSet<>();
+        for (long bucket : buckets.keySet()) {
+            for (long start = bucket - spec.buckets() + 1; start <= bucket; start++) {
+                if (!closed(start)) {
+                    starts.add(start);
+                }
+            }
+        }
+        return starts;
+    }
+
+    // the windows not closed yet
+    int openWindows() {
+        return openWindowStarts().size();
+    }
+
+    // window start (epoch second) -> the n most frequent templates, descending
+    SortedMap<Long, List<Map.Entry<String, Long>>> top(int n) {
+        SortedMap<Long, List<Map.Entry<String, Long>>> top = new TreeMap<>();
+        windows.forEach((start, summary) -> top.put(start * spec.slide, summary.top(n)));
+        for (long start : openWindowStarts()) {
+            top.put(start * spec.slide, window(start).top(n));
+        }
+        return top;
+    }
+}
@@ -0,0 +1,121 @@
+package schrader.stream.test.parallel;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ErrorTemplatesTest {
+
+    @Test
+    void normalizesNumbersIdsAndHex() {
+        assertThat(MessageTemplates.normalize("request 4711 failed")).isEqualTo("request <*> failed");
+        assertThat(MessageTemplates.normalize("user u-1234 not found (id=0x7fff, trace deadbeefcafe)"))
+                .isEqualTo("user <*> not found (id=<*>, trace <*>)");
+        assertThat(MessageTemplates.normalize("connect to 10.0.0.1:8080 timed out after 30s"))
+                .isEqualTo("connect to <*> timed out after <*>");
+        assertThat(MessageTemplates.normalize("session 123e4567-e89b-12d3-a456-426614174000 expired"))
+                .isEqualTo("session <*> expired");
+        assertThat(MessageTemplates.normalize("database unavailable")).isEqualTo("database unavailable");
+    }
+
+    @Test
+    void spaceSavingFindsHeavyHittersInFixedMemory() {
+        SplittableRandom random = new SplittableRandom(16);
+        SpaceSaving summary = new SpaceSaving(20);
+        Map<String, Long> exact = new HashMap<>();
+        for (int i = 0; i < 100_000; i++) {
+            // three heavy keys, the rest spread over 5000 rare ones
+            int r = random.nextInt(100);
+            String key = r < 30 ? "a" : r < 50 ? "b" : r < 60 ? "c" : "rare" + random.nextInt(5000);
+            summary.add(key);
+            exact.merge(key, 1L, Long::sum);
+        }
+        assertThat(summary.top(3)).extracting(Map.Entry::getKey).containsExactly("a", "b", "c");
+        for (String key : List.of("a", "b", "c")) {
+            assertThat(summary.count(key)).isBetween(exact.get(key), exact.get(key) + summary.error(key));
+            assertThat(summary.error(key)).isLessThanOrEqualTo(summary.total() / 20);
+        }
+    }
+
+    @Test
+    void mergedSummariesKeepTheHeavyHitters() {
+        SpaceSaving left = new SpaceSaving(10);
+        SpaceSaving right = new SpaceSaving(10);
+        IntStream.range(0, 5000).forEach(i -> left.add(i % 2 == 0 ? "x" : "l" + i));
+        IntStream.range(0, 5000).forEach(i -> right.add(i % 3 == 0 ? "y" : i % 3 == 1 ? "x" : "r" + i));
+        SpaceSaving merged = left.merge(right);
+        assertThat(merged.total()).isEqualTo(10_000);
+        assertThat(merged.top(2)).extracting(Map.Entry::getKey).containsExactly("x", "y");
+        assertThat(merged.count("x")).isGreaterThanOrEqualTo(2500 + 1667);
+    }
+
+    @Test
+    void spaceSavingLooksUpCharSequences() {
+        SpaceSaving summary = new SpaceSaving(3);
+        StringBuilder key = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            key.setLength(0);
+            key.append(i % 2 == 0 ? "even" : "odd " + i % 7);
+            summary.add(key);
+        }
+        assertThat(summary.count("even")).isEqualTo(500);
+        assertThat(summary.top(1)).containsExactly(entry("even", 500));
+        assertThat(summary.shrink(1).top(1)).containsExactly(entry("even", 500));
+        assertThat(summary.shrink(1).total()).isEqualTo(1000);
+    }
+
+    @Test
+    void topTemplatesPerWindow() {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 6000; i++) {
+            int minute = i / 1000;
+            String message = i % 3 == 0 ? "request " + i + " failed" : i % 3 == 1 && minute < 3 ? "disk /dev/sd" + i + " full" : "timeout after " + i + "ms";
+            lines.add(String.format("[2019-02-12T10:%02d:%02d.000+01:00] [server:error] [worker-1] [Consolidator] %s",
+                    minute, i % 60, message));
+            lines.add(String.format("[2019-02-12T10:%02d:%02d.000+01:00] [server:info] [worker-1] [Consolidator] ok %d",
+                    minute, i % 60, i));
+        }
+        SortedMap<Long, List<Map.Entry<String, Long>>> top = Consolidations.topErrorTemplates(lines.parallelStream(),
+                WindowSpec.tumbling(Duration.ofMinutes(1)), 2);
+
+        assertThat(top).hasSize(6);
+        List<Map.Entry<String, Long>> first = top.get(top.firstKey());
+        assertThat(first).extracting(Map.Entry::getKey).containsExactlyInAnyOrder("request <*> failed", "disk <*> full");
+        List<Map.Entry<String, Long>> last = top.get(top.lastKey());
+        assertThat(last).containsExactly(entry("timeout after <*>", 667), entry("request <*> failed", 333));
+    }
+
+    @Test
+    void closedWindowsKeepTheirTopOnly() {
+        List<String> lines = new ArrayList<>();
+        for (int minute = 0; minute < 100; minute++) {
+            for (int i = 0; i < 30; i++) {
+                String message = i < 20 ? "job " + minute + " failed" : "retry " + i + " after " + minute + "s";
+                lines.add(String.format("[2019-02-12T%02d:%02d:%02d.000+01:00] [server:error] [worker-1] [Consolidator] %s",
+                        minute / 60, minute % 60, i, message));
+            }
+        }
+        ErrorTemplates templates = Consolidations.errors(lines.stream())
+                .collect(() -> new ErrorTemplates(WindowSpec.tumbling(Duration.ofMinutes(1)), 1, 10),
+                        ErrorTemplates::add, ErrorTemplates::merge);
+
+        assertThat(templates.openWindows()).isEqualTo(4);
+        SortedMap<Long, List<Map.Entry<String, Long>>> top = templates.top(1);
+        assertThat(top).hasSize(100);
+        assertThat(top.values()).allSatisfy(window -> assertThat(window).containsExactly(entry("job <*> failed", 20)));
+    }
+
+    private static Map.Entry<String, Long> entry(String key, long count) {
+        return new AbstractMap.SimpleImmutableEntry<>(key, count);
+    }
+}
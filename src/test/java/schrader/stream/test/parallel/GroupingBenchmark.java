@@ -0,0 +1,72 @@
+package schrader.stream.test.parallel;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+// Run with: gradle jmh -Pjmh="GroupingBenchmark -prof gc"
+// testLongParallelStream: boxed groupingByConcurrent into a List per key vs. LongGrouping.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class GroupingBenchmark {
+
+    @Param({"1000000"})
+    public long values;
+
+    @Param({"1000", "1000000"})
+    public long keys;
+
+    private LongStream stream() {
+        return LongStream.range(0, values).parallel();
+    }
+
+    @Benchmark
+    public long boxedLists() {
+        long k = keys;
+        ConcurrentMap<Long, List<Long>> groups = stream().boxed()
+                .collect(Collectors.groupingByConcurrent(v -> v % k));
+        return groups.values().stream().mapToLong(list -> list.stream().mapToLong(Long::longValue).sum()).sum();
+    }
+
+    @Benchmark
+    public Map<Long, Long> boxedSumming() {
+        long k = keys;
+        return stream().boxed().collect(Collectors.groupingByConcurrent(v -> v % k, Collectors.summingLong(Long::longValue)));
+    }
+
+    @Benchmark
+    public SortedCounts summing() {
+        long k = keys;
+        return LongGrouping.summing(v -> v % k).collect(stream());
+    }
+
+    @Benchmark
+    public SortedCounts maximizing() {
+        long k = keys;
+        return LongGrouping.maximizing(v -> v % k).collect(stream());
+    }
+
+    @Benchmark
+    public SortedMap<Long, LongHistogram> histogram() { // 16 keys whatever the param, a histogram is 2 KB or more
+        return LongGrouping.histogram(v -> v % 16, 7).collect(stream());
+    }
+}
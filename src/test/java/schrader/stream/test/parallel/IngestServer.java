@@ -0,0 +1,394 @@
+package schrader.stream.test.parallel;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Receives LOG_ENTRY lines over TCP (newline framed) and UDP (a line per datagram, an optional syslog
+// "<PRI>" prefix is skipped) and counts the errors per second like countPerEpochSecondBatched.
+// Datagrams are collected into one buffer until it is full or LINGER_MILLIS have passed.
+//
+// One selector thread reads every connection into a direct buffer of its own. A buffer of complete
+// lines is swapped for one of a fixed pool and handed to the parse workers, which parse it with
+// EntryBatch and flush the batch counts into the totals. When the pool is empty, connections stop
+// being read until a worker returns a buffer, so a sender is slowed down by TCP flow control;
+// datagrams arriving meanwhile are dropped and counted.
+//
+// A failure of the selector thread or a parser ends the ingest. It is kept and rethrown by
+// awaitEntries() and close(), so a consumer does not wait for entries that never come.
+final class IngestServer implements Closeable {
+
+    static final int BUFFER_SIZE = 256 << 10;
+    private static final int MAX_DATAGRAM = 64 << 10;
+    private static final long LINGER_MILLIS = 10; // before a buffer of datagrams is flushed
+
+    private final Selector selector;
+    private final ServerSocketChannel tcp;
+    private final DatagramChannel udp;
+    private final ExecutorService workers;
+    private final BlockingQueue<ByteBuffer> free;
+    private final Queue<Connection> waiting = new ArrayDeque<>(); // for a free buffer
+    private final ByteBuffer datagram = ByteBuffer.allocateDirect(MAX_DATAGRAM);
+    private final ThreadLocal<EntryBatch> batches = ThreadLocal.withInitial(EntryBatch::new);
+    private final Thread selectorThread;
+    private volatile boolean open = true;
+    private volatile Throwable failure; // the first one, ends the ingest
+    private ByteBuffer datagrams; // collects datagrams until it is full or has lingered long enough
+    private long datagramsSince;
+
+    private final LongCountMap counts = new LongCountMap(); // guarded by itself
+    private long entries; // guarded by counts
+    private final AtomicLong droppedDatagrams = new AtomicLong();
+    private final AtomicLong oversizedLines = new AtomicLong();
+
+    private IngestServer(InetSocketAddress tcpAddress, InetSocketAddress udpAddress, int workers, int buffers)
+            throws IOException {
+        this.selector = Selector.open();
+        this.tcp = ServerSocketChannel.open().bind(tcpAddress);
+        this.tcp.configureBlocking(false).register(selector, SelectionKey.OP_ACCEPT);
+        this.udp = DatagramChannel.open().setOption(StandardSocketOptions.SO_RCVBUF, 4 << 20).bind(udpAddress);
+        this.udp.configureBlocking(false).register(selector, SelectionKey.OP_READ);
+        this.workers = Executors.newFixedThreadPool(workers);
+        this.free = new ArrayBlockingQueue<>(buffers);
+        for (int i = 0; i < buffers; i++) {
+            free.add(ByteBuffer.allocateDirect(BUFFER_SIZE));
+        }
+        this.selectorThread = new Thread(this::run, "ingest-selector");
+        this.selectorThread.setDaemon(true);
+        this.selectorThread.start();
+    }
+
+    // buffers * BUFFER_SIZE bytes are the most that is queued for the parsers
+    static IngestServer start(InetSocketAddress tcp, InetSocketAddress udp, int workers, int buffers) throws IOException {
+        return new IngestServer(tcp, udp, workers, buffers);
+    }
+
+    // on ephemeral loopback ports
+    static IngestServer start(int workers, int buffers) throws IOException {
+        return start(new InetSocketAddress("127.0.0.1", 0), new InetSocketAddress("127.0.0.1", 0), workers, buffers);
+    }
+
+    InetSocketAddress tcpAddress() throws IOException {
+        return (InetSocketAddress) tcp.getLocalAddress();
+    }
+
+    InetSocketAddress udpAddress() throws IOException {
+        return (InetSocketAddress) udp.getLocalAddress();
+    }
+
+    SortedCounts counts() {
+        synchronized (counts) {
+            return counts.sorted();
+        }
+    }
+
+    // lines parsed as entries so far
+    long entries() {
+        synchronized (counts) {
+            return entries;
+        }
+    }
+
+    // true if that many entries have been parsed in time, throws if the ingest has failed
+    boolean awaitEntries(long n, Duration timeout) throws InterruptedException, IOException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        synchronized (counts) {
+            for (long left = timeout.toNanos(); entries < n; left = deadline - System.nanoTime()) {
+                checkFailure();
+                if (left <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(counts, left);
+            }
+            return true;
+        }
+    }
+
+    long droppedDatagrams() {
+        return droppedDatagrams.get();
+    }
+
+    // lines longer than a buffer, they are skipped
+    long oversizedLines() {
+        return oversizedLines.get();
+    }
+
+    private void run() {
+        try {
+            while (open) {
+                selector.select(datagrams == null ? 100 : LINGER_MILLIS);
+                resume();
+                if (datagrams != null && System.nanoTime() - datagramsSince >= TimeUnit.MILLISECONDS.toNanos(LINGER_MILLIS)) {
+                    submit(datagrams);
+                    datagrams = null;
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else if (key.channel() == udp) {
+                        receive();
+                    } else if (key.isReadable()) {
+                        read((Connection) key.attachment());
+                    }
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            if (open) {
+                fail(e);
+            }
+        }
+    }
+
+    // keeps the first failure and wakes up the consumers waiting for entries
+    private void fail(Throwable e) {
+        synchronized (counts) {
+            if (failure == null) {
+                failure = e;
+            }
+            counts.notifyAll();
+        }
+    }
+
+    private void checkFailure() throws IOException {
+        Throwable e = failure;
+        if (e != null) {
+            throw new IOException("ingest failed", e);
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = tcp.accept();
+        if (channel != null) {
+            channel.configureBlocking(false);
+            Connection connection = new Connection(channel);
+            connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+        }
+    }
+
+    private void read(Connection connection) throws IOException {
+        int n;
+        try {
+            n = connection.channel.read(connection.buffer);
+        } catch (IOException e) {
+            n = -1; // reset by the peer
+        }
+        if (n < 0) {
+            connection.eof = true;
+        }
+        if (!connection.handOff()) {
+            connection.key.interestOps(0);
+            waiting.add(connection);
+        } else if (connection.eof) {
+            connection.close();
+        }
+    }
+
+    // connections waiting for a buffer continue in arrival order
+    private void resume() throws IOException {
+        for (Connection connection = waiting.peek(); connection != null; connection = waiting.peek()) {
+            if (!connection.handOff()) {
+                return;
+            }
+            waiting.remove();
+            if (connection.eof) {
+                connection.close();
+            } else {
+                connection.key.interestOps(SelectionKey.OP_READ);
+            }
+        }
+    }
+
+    private void receive() throws IOException {
+        while (true) {
+            datagram.clear();
+            if (udp.receive(datagram) == null) {
+                break;
+            }
+            datagram.flip();
+            skipPriority(datagram);
+            if (datagrams != null && datagrams.remaining() < datagram.remaining() + 1) {
+                submit(datagrams);
+                datagrams = null;
+            }
+            if (datagrams == null) {
+                if ((datagrams = free.poll()) == null) {
+                    droppedDatagrams.incrementAndGet();
+                    continue;
+                }
+                datagramsSince = System.nanoTime();
+            }
+            datagrams.put(datagram);
+            if (datagrams.position() > 0 && datagrams.get(datagrams.position() - 1) != '\n') {
+                datagrams.put((byte) '\n');
+            }
+        }
+    }
+
+    // "<34>" in front of a syslog message
+    private static void skipPriority(ByteBuffer b) {
+        int p = b.position();
+        if (b.remaining() > 2 && b.get(p) == '<') {
+            int i = p + 1;
+            while (i < b.limit() && i - p <= 4 && b.get(i) >= '0' && b.get(i) <= '9') {
+                i++;
+            }
+            if (i > p + 1 && i < b.limit() && b.get(i) == '>') {
+                b.position(i + 1);
+            }
+        }
+    }
+
+    // the buffer is written up to its position
+    private void submit(ByteBuffer buffer) {
+        buffer.flip();
+        workers.execute(() -> {
+            try {
+                parse(buffer);
+            } catch (RuntimeException e) {
+                fail(e);
+            } finally {
+                buffer.clear();
+                free.offer(buffer); // the pool may have been topped up by a closed connection
+                selector.wakeup();
+            }
+        });
+    }
+
+    private void parse(ByteBuffer buffer) {
+        EntryBatch batch = batches.get();
+        LongCountMap local = new LongCountMap();
+        long parsed = 0;
+        for (int p = buffer.position(); p < buffer.limit(); ) {
+            p = batch.fill(buffer, p);
+            parsed += batch.size();
+            batch.countPerEpochSecond(Levels.ERROR, local);
+        }
+        synchronized (counts) {
+            local.forEach(counts::add);
+            entries += parsed;
+            counts.notifyAll();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        open = false;
+        selector.wakeup();
+        try {
+            selectorThread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // the datagrams still lingering are parsed, and every parse is counted before close() returns
+        if (datagrams != null) {
+            submit(datagrams);
+            datagrams = null;
+        }
+        workers.shutdown();
+        try {
+            workers.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (SelectionKey key : selector.keys()) {
+            key.channel().close();
+        }
+        selector.close();
+        checkFailure();
+    }
+
+    private final class Connection {
+
+        final SocketChannel channel;
+        SelectionKey key;
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        boolean eof;
+        boolean skipping; // the rest of an oversized line, up to its newline
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        // Submits the complete lines, all bytes at the end of the stream, and keeps the rest in a
+        // fresh buffer. False if there is none, the connection has to wait then.
+        boolean handOff() {
+            if (skipping && !skipLine()) {
+                return true;
+            }
+            int end = eof ? buffer.position() : lastNewline() + 1;
+            if (end == 0) {
+                if (!buffer.hasRemaining()) {
+                    oversizedLines.incrementAndGet();
+                    buffer.clear();
+                    skipping = true;
+                }
+                return true;
+            }
+            ByteBuffer next = free.poll();
+            if (next == null) {
+                return false;
+            }
+            ByteBuffer tail = buffer.duplicate();
+            tail.flip().position(end);
+            next.put(tail);
+            buffer.position(end);
+            submit(buffer);
+            buffer = next;
+            return true;
+        }
+
+        // drops the bytes up to the first newline, false if there is none yet
+        private boolean skipLine() {
+            for (int i = 0; i < buffer.position(); i++) {
+                if (buffer.get(i) == '\n') {
+                    buffer.flip().position(i + 1);
+                    buffer.compact();
+                    skipping = false;
+                    return true;
+                }
+            }
+            buffer.clear();
+            return false;
+        }
+
+        private int lastNewline() {
+            for (int i = buffer.position() - 1; i >= 0; i--) {
+                if (buffer.get(i) == '\n') {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        void close() throws IOException {
+            key.cancel();
+            channel.close();
+            // back to the pool unless it is full, the connection brought a buffer of its own
+            buffer.clear();
+            free.offer(buffer);
+        }
+    }
+}
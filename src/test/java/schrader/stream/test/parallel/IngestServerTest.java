@@ -0,0 +1,98 @@
+package schrader.stream.test.parallel;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IngestServerTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void tcpConnectionsAreThrottledNotDropped() throws Exception {
+        Path log = dir.resolve("test.log");
+        LogGenerator.write(log, 50_000, 18);
+        SortedCounts expected;
+        try (Stream<String> lines = Files.lines(log)) {
+            expected = Consolidations.countPerEpochSecond(lines);
+        }
+        // two buffers for two senders: every hand off has to wait for a parser
+        try (IngestServer server = IngestServer.start(1, 2)) {
+            List<CompletableFuture<Long>> senders = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                senders.add(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return LogReplay.tcp(log, server.tcpAddress(), 0);
+                    } catch (IOException | InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }));
+            }
+            for (CompletableFuture<Long> sender : senders) {
+                assertThat(sender.get()).isEqualTo(50_000);
+            }
+            assertThat(server.awaitEntries(100_000, Duration.ofSeconds(30))).isTrue();
+            SortedCounts counts = server.counts();
+            assertThat(counts.size()).isEqualTo(expected.size());
+            for (int i = 0; i < counts.size(); i++) {
+                assertThat(counts.key(i)).isEqualTo(expected.key(i));
+                assertThat(counts.count(i)).isEqualTo(2 * expected.count(i));
+            }
+            assertThat(server.oversizedLines()).isZero();
+        }
+    }
+
+    @Test
+    void anOversizedLineIsSkippedUpToItsNewline() throws Exception {
+        // the buffer fills up with the x's, an entry follows in the same line
+        String oversized = "x".repeat(IngestServer.BUFFER_SIZE)
+                + "[2019-02-12T10:15:30+01:00] [server:error] [main] [Syslog] disk full\n";
+        String line = "[2019-02-12T10:15:31+01:00] [server:error] [main] [Syslog] disk full\n";
+        IngestServer server = IngestServer.start(1, 2);
+        try (server; SocketChannel channel = SocketChannel.open(server.tcpAddress())) {
+            channel.write(ByteBuffer.wrap((oversized + line).getBytes(StandardCharsets.UTF_8)));
+            assertThat(server.awaitEntries(1, Duration.ofSeconds(10))).isTrue();
+        }
+        assertThat(server.entries()).isEqualTo(1);
+        assertThat(server.counts().key(0)).isEqualTo(OffsetDateTime.parse("2019-02-12T10:15:31+01:00").toEpochSecond());
+        assertThat(server.oversizedLines()).isEqualTo(1);
+    }
+
+    @Test
+    void udpDatagramsAtAGivenRate() throws Exception {
+        Path log = dir.resolve("test.log");
+        LogGenerator.write(log, 2_000, 18);
+        try (IngestServer server = IngestServer.start(2, 8)) {
+            long start = System.nanoTime();
+            assertThat(LogReplay.udp(log, server.udpAddress(), 10_000)).isEqualTo(2_000);
+            assertThat(Duration.ofNanos(System.nanoTime() - start)).isGreaterThan(Duration.ofMillis(150));
+            try (DatagramChannel channel = DatagramChannel.open()) {
+                channel.send(ByteBuffer.wrap("<11>[2019-02-12T10:15:30+01:00] [server:error] [main] [Syslog] disk full"
+                        .getBytes(StandardCharsets.UTF_8)), server.udpAddress());
+            }
+            assertThat(server.awaitEntries(2_001, Duration.ofSeconds(10))).isTrue();
+            assertThat(server.droppedDatagrams()).isZero();
+            long errors;
+            try (Stream<String> lines = Files.lines(log)) {
+                errors = Consolidations.errors(lines).count();
+            }
+            assertThat(server.counts().total()).isEqualTo(errors + 1);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package schrader.stream.test.parallel;
+
+// One JSON object per line: {"time":"2019-02-12T10:15:30.123+01:00","level":"ERROR","msg":"..."}.
+// Only the members of the top level object are looked at, nested values are skipped. A message
+// with escape sequences is unescaped into a string of its own, any other stays a span of the line.
+final class JsonLines {
+
+    private static final String[] TIME = {"time", "timestamp", "ts", "@timestamp"};
+    private static final String[] LEVEL = {"level", "severity", "lvl"};
+    private static final String[] MESSAGE = {"msg", "message"};
+
+    private JsonLines() {
+    }
+
+    static Entry parse(String line) {
+        int length = line.length();
+        int p = skipWhitespace(line, 0);
+        if (p >= length || line.charAt(p) != '{') {
+            return null;
+        }
+        int timeStart = -1, timeEnd = -1, levelStart = -1, levelEnd = -1, messageStart = length, messageEnd = length;
+        for (p++; ; ) {
+            p = skipWhitespace(line, p);
+            if (p >= length) {
+                return null;
+            }
+            char c = line.charAt(p);
+            if (c == '}') {
+                break;
+            }
+            if (c == ',') {
+                p++;
+                continue;
+            }
+            if (c != '"') {
+                return null;
+            }
+            int keyStart = p + 1;
+            int keyEnd = stringEnd(line, keyStart);
+            p = keyEnd < 0 ? length : skipWhitespace(line, keyEnd + 1);
+            if (p >= length || line.charAt(p) != ':') {
+                return null;
+            }
+            p = skipWhitespace(line, p + 1);
+            if (p < length && line.charAt(p) == '"') {
+                int valueStart = p + 1;
+                int valueEnd = stringEnd(line, valueStart);
+                if (valueEnd < 0) {
+                    return null;
+                }
+                if (isOneOf(line, keyStart, keyEnd, TIME)) {
+                    timeStart = valueStart;
+                    timeEnd = valueEnd;
+                } else if (isOneOf(line, keyStart, keyEnd, LEVEL)) {
+                    levelStart = valueStart;
+                    levelEnd = valueEnd;
+                } else if (isOneOf(line, keyStart, keyEnd, MESSAGE)) {
+                    messageStart = valueStart;
+                    messageEnd = valueEnd;
+                }
+                p = valueEnd + 1;
+            } else {
+                p = skipValue(line, p);
+                if (p < 0) {
+                    return null;
+                }
+            }
+        }
+        if (timeStart < 0 || levelStart < 0) {
+            return null;
+        }
+        ParsedEntry entry = new ParsedEntry();
+        if (!Timestamps.parse(line, timeStart, timeEnd, entry)) {
+            return null;
+        }
+        entry.level = Levels.nameIgnoreCase(line, levelStart, levelEnd);
+        int escape = line.indexOf('\\', messageStart);
+        if (escape >= 0 && escape < messageEnd) {
+            String message = unescape(line, messageStart, messageEnd);
+            if (message == null) {
+                return null;
+            }
+            entry.line = message;
+            entry.messageStart = 0;
+            entry.messageEnd = message.length();
+        } else {
+            entry.line = line;
+            entry.messageStart = messageStart;
+            entry.messageEnd = messageEnd;
+        }
+        return entry;
+    }
+
+    // the string value [from, to) with its escape sequences replaced, null if one is invalid
+    static String unescape(String s, int from, int to) {
+        StringBuilder value = new StringBuilder(to - from);
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c != '\\') {
+                value.append(c);
+                continue;
+            }
+            if (++i == to) {
+                return null;
+            }
+            switch (s.charAt(i)) {
+                case '"':
+                case '\\':
+                case '/':
+                    value.append(s.charAt(i));
+                    break;
+                case 'b':
+                    value.append('\b');
+                    break;
+                case 'f':
+                    value.append('\f');
+                    break;
+                case 'n':
+                    value.append('\n');
+                    break;
+                case 'r':
+                    value.append('\r');
+                    break;
+                case 't':
+                    value.append('\t');
+                    break;
+                case 'u':
+                    if (i + 4 >= to) {
+                        return null;
+                    }
+                    int code = 0;
+                    for (int j = i + 1; j <= i + 4; j++) {
+                        int digit = Character.digit(s.charAt(j), 16);
+                        if (digit < 0) {
+                            return null;
+                        }
+                        code = code << 4 | digit;
+                    }
+                    value.append((char) code);
+                    i += 4;
+                    break;
+                default:
+                    return null;
+            }
+        }
+        return value.toString();
+    }
+
+    static boolean isOneOf(String s, int from, int to, String[] names) {
+        for (String name : names) {
+            if (name.length() == to - from && s.regionMatches(from, name, 0, name.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // index of the closing quote of the string starting at 'from', -1 if it is not closed
+    private static int stringEnd(String s, int from) {
+        for (int i = from; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '"') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // index of the ',' or '}' after a non-string value, -1 if the value is not closed
+    private static int skipValue(String s, int from) {
+        int depth = 0;
+        for (int i = from; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"') {
+                i = stringEnd(s, i + 1);
+                if (i < 0) {
+                    return -1;
+                }
+            } else if (c == '{' || c == '[') {
+                depth++;
+            } else if (c == ']' || (c == '}' && depth > 0)) {
+                depth--;
+            } else if (depth == 0 && (c == ',' || c == '}')) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int skipWhitespace(String s, int p) {
+        while (p < s.length() && Character.isWhitespace(s.charAt(p))) {
+            p++;
+        }
+        return p;
+    }
+}
@@ -0,0 +1,7 @@
+package schrader.stream.test.parallel;
+
+@FunctionalInterface
+interface KeyCountConsumer {
+
+    void accept(long key, long count);
+}
@@ -0,0 +1,71 @@
+package schrader.stream.test.parallel;
+
+import java.util.Locale;
+
+final class Levels {
+
+    static final byte UNKNOWN = 0;
+    static final byte TRACE = 1;
+    static final byte DEBUG = 2;
+    static final byte INFO = 3;
+    static final byte WARN = 4;
+    static final byte ERROR = 5;
+    static final byte FATAL = 6;
+
+    static final int COUNT = 7;
+
+    private static final String[] NAMES = {null, "trace", "debug", "info", "warn", "error", "fatal"};
+
+    private Levels() {
+    }
+
+    static String name(byte code) {
+        return NAMES[code];
+    }
+
+    // matches the region against the known level names without creating a substring
+    static byte code(CharSequence s, int from, int to) {
+        int length = to - from;
+        for (byte code = 1; code < NAMES.length; code++) {
+            String name = NAMES[code];
+            if (name.length() == length && regionMatches(s, from, name)) {
+                return code;
+            }
+        }
+        return UNKNOWN;
+    }
+
+    private static boolean regionMatches(CharSequence s, int from, String name) {
+        for (int i = 0; i < name.length(); i++) {
+            if (s.charAt(from + i) != name.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static byte code(String name) {
+        return code(name, 0, name.length());
+    }
+
+    // returns the shared constant for known levels, a substring only for unknown ones
+    static String name(String s, int from, int to) {
+        byte code = code(s, from, to);
+        return code == UNKNOWN ? s.substring(from, to) : NAMES[code];
+    }
+
+    // for formats writing "ERROR", "Warning", ..
+    static String nameIgnoreCase(String s, int from, int to) {
+        int length = to - from;
+        for (byte code = 1; code < NAMES.length; code++) {
+            String name = NAMES[code];
+            if (name.length() == length && s.regionMatches(true, from, name, 0, length)) {
+                return name;
+            }
+        }
+        if (length == 7 && s.regionMatches(true, from, "warning", 0, length)) {
+            return NAMES[WARN];
+        }
+        return s.substring(from, to).toLowerCase(Locale.ROOT);
+    }
+}
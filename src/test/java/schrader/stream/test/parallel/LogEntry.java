@@ -1,33 +1,63 @@
 package schrader.stream.test.parallel;
 
 import java.time.Instant;
-import java.time.LocalDateTime;
-import java.time.ZoneId;
+import java.time.OffsetDateTime;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.Optional;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 abstract class Entry {
 
-    Instant timeStamp;
+    long epochSecond;
+    int nano;
     String level;
+    String line;
+    int messageStart;
+    int messageEnd;
 
     static Optional<Entry> of(String line, Format format) {
-        if (format == Format.LOG_ENTRY) {
-            return Optional.of(new LogEntry(line));
-        }
-        return Optional.empty();
+        return Optional.ofNullable(parse(line, format));
+    }
+
+    // null if the line is not of the given format, spares bulk parsing an Optional per line
+    static Entry parse(String line, Format format) {
+        return EntryParsers.get(format).parse(line);
     }
 
     Instant getTimeStamp() {
-        return this.timeStamp;
+        return Instant.ofEpochSecond(this.epochSecond, this.nano);
+    }
+
+    long getEpochSecond() {
+        return this.epochSecond;
+    }
+
+    String getMessage() {
+        return this.line.substring(this.messageStart, this.messageEnd);
+    }
+
+    // The parsers leave the whole line referenced, so a streaming pipeline reads the message in
+    // place, if at all, and never copies it. An entry held beyond the pipeline, e.g. in a list,
+    // is detached first to keep the message only.
+    Entry detach() {
+        if (this.messageStart > 0 || this.messageEnd < this.line.length()) {
+            this.line = getMessage();
+            this.messageStart = 0;
+            this.messageEnd = this.line.length();
+        }
+        return this;
     }
 
     abstract public boolean isError();
 
     enum Format {
-        LOG_ENTRY
+        LOG_ENTRY, // bracket scanner
+        LOG_ENTRY_REGEX, // reference implementation, same output as LOG_ENTRY
+        JSON, // JSON lines with time, level and msg members
+        LOGFMT, // key=value pairs: time=.. level=.. msg=".."
+        APACHE_ACCESS // common/combined access log, the level follows from the status code
     }
 }
 
@@ -35,17 +65,79 @@ class LogEntry extends Entry {
 
     private static String regex = "\\[(.*)]\\s\\[(.*):(.*)]\\s\\[(.*)]\\s\\[(.*)]\\s(.+)";
     private static Pattern pattern = Pattern.compile(regex);
+    private static final ThreadLocal<TimestampDecoder> TIMESTAMPS = ThreadLocal.withInitial(TimestampDecoder::new);
+
+    private LogEntry() {
+    }
 
     LogEntry(String line) {
         Matcher matches = pattern.matcher(line);
         if (matches.find()) {
             String group1 = matches.group(1);
-            this.timeStamp = LocalDateTime.parse(group1, DateTimeFormatter.ISO_OFFSET_DATE_TIME)
-                .atZone(ZoneId.systemDefault()).toInstant();
+            Instant timeStamp;
+            try {
+                timeStamp = OffsetDateTime.parse(group1, DateTimeFormatter.ISO_OFFSET_DATE_TIME).toInstant();
+            } catch (DateTimeParseException e) {
+                return; // no level, match() rejects the line
+            }
+            this.epochSecond = timeStamp.getEpochSecond();
+            this.nano = timeStamp.getNano();
             this.level = matches.group(3);
+            this.line = line;
+            this.messageStart = matches.start(6);
+            this.messageEnd = matches.end(6);
         }
     }
 
+    // null if the line does not match the regex or its timestamp does not parse
+    static LogEntry match(String line) {
+        LogEntry entry = new LogEntry(line);
+        return entry.level == null ? null : entry;
+    }
+
+    // Finds the field boundaries of "[timestamp] [source:level] [..] [..] message" by index,
+    // returns null if the line does not have that shape.
+    static LogEntry scan(String line) {
+        int length = line.length();
+        if (length == 0 || line.charAt(0) != '[') {
+            return null;
+        }
+        int timeStampEnd = line.indexOf(']', 1);
+        if (!opensField(line, timeStampEnd)) {
+            return null;
+        }
+        int levelEnd = line.indexOf(']', timeStampEnd + 3);
+        int colon = levelEnd < 0 ? -1 : line.lastIndexOf(':', levelEnd);
+        if (colon <= timeStampEnd + 2) {
+            return null;
+        }
+        int end = levelEnd;
+        for (int field = 0; field < 2; field++) {
+            if (!opensField(line, end)) {
+                return null;
+            }
+            end = line.indexOf(']', end + 3);
+        }
+        if (end < 0 || end + 2 >= length || !Character.isWhitespace(line.charAt(end + 1))) {
+            return null;
+        }
+        LogEntry entry = new LogEntry();
+        if (!TIMESTAMPS.get().decode(line, 1, timeStampEnd, entry)) {
+            return null;
+        }
+        entry.level = Levels.name(line, colon + 1, levelEnd);
+        entry.line = line;
+        entry.messageStart = end + 2;
+        entry.messageEnd = length;
+        return entry;
+    }
+
+    // "] [" at the given closing bracket
+    private static boolean opensField(String line, int close) {
+        return close > 0 && close + 2 < line.length()
+                && Character.isWhitespace(line.charAt(close + 1)) && line.charAt(close + 2) == '[';
+    }
+
     public boolean isError() {
         return this.level.equals("error");
     }
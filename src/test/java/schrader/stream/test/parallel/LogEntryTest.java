@@ -0,0 +1,61 @@
+package schrader.stream.test.parallel;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LogEntryTest {
+
+    private static final List<String> LINES = List.of(
+            "[2019-02-12T10:15:30.123+01:00] [server:error] [main] [Consolidator] Connection refused",
+            "[2019-02-12T10:15:30+01:00] [server:info] [main] [Consolidator] started",
+            "[2019-02-12T23:59:59.999999999Z] [a:b:warn] [pool-1] [Worker] done: 3 items",
+            "[2020-02-29T00:00:00.5-05:30] [server:notice] [main] [Consolidator] leap day");
+
+    @Test
+    void scannerMatchesRegex() {
+        for (String line : LINES) {
+            Entry scanned = Entry.of(line, Entry.Format.LOG_ENTRY).orElseThrow();
+            Entry matched = Entry.of(line, Entry.Format.LOG_ENTRY_REGEX).orElseThrow();
+            assertThat(scanned.getTimeStamp()).isEqualTo(matched.getTimeStamp());
+            assertThat(scanned.level).isEqualTo(matched.level);
+            assertThat(scanned.isError()).isEqualTo(matched.isError());
+            assertThat(scanned.getMessage()).isEqualTo(matched.getMessage());
+        }
+    }
+
+    @Test
+    void offsetIsApplied() {
+        assertThat(Entry.parse(LINES.get(0), Entry.Format.LOG_ENTRY).getTimeStamp())
+                .isEqualTo(Instant.parse("2019-02-12T09:15:30.123Z"));
+        assertThat(Entry.parse(LINES.get(3), Entry.Format.LOG_ENTRY_REGEX).getTimeStamp())
+                .isEqualTo(Instant.parse("2020-02-29T05:30:00.5Z"));
+    }
+
+    @Test
+    void scannerRejectsMalformedLines() {
+        assertThat(Entry.of("", Entry.Format.LOG_ENTRY)).isEmpty();
+        assertThat(Entry.of("Zeile 1", Entry.Format.LOG_ENTRY)).isEmpty();
+        assertThat(Entry.of("[2019-02-12T10:15:30+01:00] [server:error]", Entry.Format.LOG_ENTRY)).isEmpty();
+        assertThat(Entry.of("[2019-02-30T10:15:30+01:00] [server:error] [main] [x] msg", Entry.Format.LOG_ENTRY)).isEmpty();
+        assertThat(Entry.of("[yesterday] [server:error] [main] [x] msg", Entry.Format.LOG_ENTRY)).isEmpty();
+    }
+
+    @Test
+    void regexRejectsMalformedTimestamps() {
+        assertThat(Entry.of("[2019-02-30T10:15:30+01:00] [server:error] [main] [x] msg", Entry.Format.LOG_ENTRY_REGEX)).isEmpty();
+        assertThat(Entry.of("[yesterday] [server:error] [main] [x] msg", Entry.Format.LOG_ENTRY_REGEX)).isEmpty();
+    }
+
+    @Test
+    void detachKeepsTheMessageOnly() {
+        Entry entry = Entry.parse(LINES.get(0), Entry.Format.LOG_ENTRY);
+        assertThat(entry.line).isSameAs(LINES.get(0));
+        assertThat(entry.detach().line).isEqualTo("Connection refused");
+        assertThat(entry.getMessage()).isEqualTo("Connection refused");
+        assertThat(entry.isError()).isTrue();
+    }
+}
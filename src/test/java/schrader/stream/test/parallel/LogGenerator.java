@@ -0,0 +1,255 @@
+package schrader.stream.test.parallel;
+
+import schrader.stream.test.BlockWriter;
+import schrader.stream.test.Zipf;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+// Writes reproducible LOG_ENTRY formatted files: "[timestamp] [server:level] [thread] [class] message".
+// The lines are made in blocks on all cores and written through direct buffers, a block depends on
+// the seed and its index only, so a file is the same for any number of threads and up to any size.
+final class LogGenerator {
+
+    static final String VERSION = "v2"; // part of the cached file names, to be raised when the output changes
+    private static final int BLOCK_LINES = 16_384;
+    private static final byte[][] LEVELS = bytes("trace", "debug", "info", "warn");
+    private static final byte[] ERROR = bytes("error")[0];
+    private static final byte[] SERVER = bytes("] [server:")[0];
+    private static final byte[] WORKER = bytes("] [worker-")[0];
+    private static final byte[] CLASS = bytes("] [Consolidator] ")[0];
+    private static final byte[] HEX = bytes("0123456789abcdef")[0];
+    private static final ZoneOffset OFFSET = ZoneOffset.ofHours(1);
+    private static final Instant START = Instant.parse("2019-02-12T09:00:00Z");
+    private static final DateTimeFormatter MINUTE = DateTimeFormatter.ofPattern("uuuu-MM-dd'T'HH:mm:");
+    private static final long SEED = 4711;
+
+    enum Timing {
+        STEADY, // lines evenly spread, jittered within their slot
+        BURSTY // the rate swings between half and ten times the mean once a minute
+    }
+
+    private long lines = 1_000_000;
+    private long maxBytes = Long.MAX_VALUE;
+    private double errorRatio = 0.01;
+    private long seed = SEED;
+    private Instant start = START;
+    private ZoneOffset offset = OFFSET;
+    private double linesPerSecond = 400;
+    private Timing timing = Timing.STEADY;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private List<Template> messages = Template.of("request {} done");
+    private List<Template> errors = Template.of("request {} failed");
+
+    LogGenerator lines(long lines) {
+        this.lines = lines;
+        return this;
+    }
+
+    // stops after the first block reaching the size, the line count is ignored then
+    LogGenerator maxBytes(long maxBytes) {
+        this.lines = Long.MAX_VALUE;
+        this.maxBytes = maxBytes;
+        return this;
+    }
+
+    LogGenerator errorRatio(double errorRatio) {
+        this.errorRatio = errorRatio;
+        return this;
+    }
+
+    LogGenerator seed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    LogGenerator start(Instant start, ZoneOffset offset) {
+        this.start = start;
+        this.offset = offset;
+        return this;
+    }
+
+    LogGenerator timing(Timing timing, double linesPerSecond) {
+        this.timing = timing;
+        this.linesPerSecond = linesPerSecond;
+        return this;
+    }
+
+    LogGenerator threads(int threads) {
+        this.threads = threads;
+        return this;
+    }
+
+    // message vocabularies drawn Zipf distributed in the given order, "{}" stands for a number and
+    // "{id}" for a hex id
+    LogGenerator messages(String... templates) {
+        this.messages = Template.of(templates);
+        return this;
+    }
+
+    LogGenerator errors(String... templates) {
+        this.errors = Template.of(templates);
+        return this;
+    }
+
+    // generated once per line count under java.io.tmpdir and reused afterwards
+    static Path cached(int lines) throws IOException {
+        Path dir = Paths.get(System.getProperty("java.io.tmpdir"), "stream-demo");
+        Path file = dir.resolve("test-" + lines + "-" + VERSION + ".log");
+        if (Files.notExists(file)) {
+            Files.createDirectories(dir);
+            Path tmp = Files.createTempFile(dir, "test-" + lines, ".tmp");
+            write(tmp, lines, SEED);
+            Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE);
+        }
+        return file;
+    }
+
+    // the class path resource if there is one, a generated file of the line count otherwise
+    static Path resourceOrCached(String name, int lines) throws IOException {
+        URL url = LogGenerator.class.getClassLoader().getResource(name);
+        if (url == null) {
+            return cached(lines);
+        }
+        try {
+            return Paths.get(url.toURI());
+        } catch (URISyntaxException e) {
+            throw new IOException(e);
+        }
+    }
+
+    static void write(Path file, int lines, long seed) throws IOException {
+        new LogGenerator().lines(lines).seed(seed).write(file);
+    }
+
+    // returns the file size
+    long write(Path file) throws IOException {
+        Zipf messageRanks = new Zipf(messages.size());
+        Zipf errorRanks = new Zipf(errors.size());
+        byte[] zone = bytes(offset.getId())[0];
+        return BlockWriter.write(file, threads, maxBytes, (block, into) -> {
+            long first = block * BLOCK_LINES;
+            if (first >= lines) {
+                return false;
+            }
+            SplittableRandom random = Zipf.random(seed, block);
+            long minute = Long.MIN_VALUE;
+            byte[] prefix = null;
+            for (long i = first; i < Math.min(lines, first + BLOCK_LINES); i++) {
+                long millis = millis(i, random) + offset.getTotalSeconds() * 1000L;
+                if (Math.floorDiv(millis, 60_000) != minute) {
+                    minute = Math.floorDiv(millis, 60_000);
+                    prefix = bytes(MINUTE.format(LocalDateTime.ofEpochSecond(minute * 60, 0, ZoneOffset.UTC)))[0];
+                }
+                int milli = Math.floorMod(millis, 60_000);
+                into.put((byte) '[').put(prefix);
+                digits(into, milli / 1000, 2);
+                into.put((byte) '.');
+                digits(into, milli % 1000, 3);
+                boolean error = random.nextDouble() < errorRatio;
+                into.put(zone).put(SERVER).put(error ? ERROR : LEVELS[random.nextInt(LEVELS.length)]).put(WORKER);
+                digits(into, random.nextInt(8), 1);
+                into.put(CLASS);
+                Template template = error ? errors.get(errorRanks.next(random)) : messages.get(messageRanks.next(random));
+                template.render(into, random);
+                into.put((byte) '\n');
+            }
+            return true;
+        });
+    }
+
+    // epoch millis of line i, never before the millis of line i - 1
+    private long millis(long i, SplittableRandom random) {
+        double gap = 1000 / linesPerSecond;
+        double elapsed;
+        if (timing == Timing.STEADY) {
+            elapsed = (i + random.nextDouble()) * gap;
+        } else {
+            // t(i) = gap * (i + a * P / 2pi * sin(2pi * i / P)) rises with i for a < 1
+            double period = linesPerSecond * 60;
+            double a = 0.9;
+            elapsed = gap * (i + a * period / (2 * Math.PI) * Math.sin(2 * Math.PI * i / period));
+        }
+        return start.toEpochMilli() + (long) elapsed;
+    }
+
+    private static void digits(ByteBuffer into, long value, int width) {
+        for (long scale = pow10(width - 1); scale > 0; scale /= 10) {
+            into.put((byte) ('0' + value / scale % 10));
+        }
+    }
+
+    private static long pow10(int n) {
+        long value = 1;
+        for (int i = 0; i < n; i++) {
+            value *= 10;
+        }
+        return value;
+    }
+
+    private static byte[][] bytes(String... strings) {
+        byte[][] bytes = new byte[strings.length][];
+        for (int i = 0; i < strings.length; i++) {
+            bytes[i] = strings[i].getBytes(StandardCharsets.UTF_8);
+        }
+        return bytes;
+    }
+
+    // a message split at its "{}" and "{id}" holes
+    private static final class Template {
+
+        private final List<byte[]> parts = new ArrayList<>();
+        private final List<Boolean> ids = new ArrayList<>();
+
+        private Template(String text) {
+            int p = 0;
+            for (int hole = text.indexOf('{'); hole >= 0; hole = text.indexOf('{', hole + 1)) {
+                boolean id = text.startsWith("{id}", hole);
+                if (id || text.startsWith("{}", hole)) {
+                    parts.add(bytes(text.substring(p, hole))[0]);
+                    ids.add(id);
+                    p = hole + (id ? 4 : 2);
+                }
+            }
+            parts.add(bytes(text.substring(p))[0]);
+        }
+
+        static List<Template> of(String... texts) {
+            List<Template> templates = new ArrayList<>();
+            for (String text : texts) {
+                templates.add(new Template(text));
+            }
+            return templates;
+        }
+
+        void render(ByteBuffer into, SplittableRandom random) {
+            for (int k = 0; k < ids.size(); k++) {
+                into.put(parts.get(k));
+                if (ids.get(k)) {
+                    int id = random.nextInt();
+                    for (int shift = 28; shift >= 0; shift -= 4) {
+                        into.put(HEX[(id >>> shift) & 0xF]);
+                    }
+                } else {
+                    int n = random.nextInt(100_000);
+                    digits(into, n, n < 10 ? 1 : n < 100 ? 2 : n < 1_000 ? 3 : n < 10_000 ? 4 : 5);
+                }
+            }
+            into.put(parts.get(ids.size()));
+        }
+    }
+}
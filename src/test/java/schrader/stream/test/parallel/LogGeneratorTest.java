@@ -0,0 +1,65 @@
+package schrader.stream.test.parallel;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LogGeneratorTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void sameFileForAnyNumberOfThreads() throws IOException {
+        Path one = dir.resolve("one.log");
+        Path four = dir.resolve("four.log");
+        long size = new LogGenerator().lines(100_000).seed(20).threads(1).write(one);
+        new LogGenerator().lines(100_000).seed(20).threads(4).write(four);
+        assertThat(size).isEqualTo(Files.size(one));
+        assertThat(Files.readAllBytes(four)).isEqualTo(Files.readAllBytes(one));
+        assertThat(Files.readAllLines(one)).hasSize(100_000);
+    }
+
+    @Test
+    void linesParseInTimeOrder() throws IOException {
+        for (LogGenerator.Timing timing : LogGenerator.Timing.values()) {
+            Path log = dir.resolve(timing + ".log");
+            new LogGenerator().lines(50_000).errorRatio(0.1).timing(timing, 1_000)
+                    .start(Instant.parse("2019-12-31T23:59:30Z"), ZoneOffset.ofHoursMinutes(-5, -30)).write(log);
+            List<Entry> entries = Files.readAllLines(log).stream()
+                    .map(line -> Entry.parse(line, Entry.Format.LOG_ENTRY))
+                    .collect(Collectors.toList());
+            assertThat(entries).doesNotContainNull();
+            assertThat(entries).extracting(Entry::getTimeStamp).isSorted();
+            assertThat(entries.get(0).getTimeStamp()).isBetween(Instant.parse("2019-12-31T23:59:30Z"), Instant.parse("2019-12-31T23:59:31Z"));
+            assertThat(entries.get(entries.size() - 1).getTimeStamp()).isBetween(Instant.parse("2020-01-01T00:00:10Z"), Instant.parse("2020-01-01T00:00:30Z"));
+            assertThat(entries.stream().filter(Entry::isError).count()).isBetween(4_500L, 5_500L);
+        }
+    }
+
+    @Test
+    void stopsAtTheSizeWithTheTemplatesGiven() throws IOException {
+        Path log = dir.resolve("sized.log");
+        long size = new LogGenerator().maxBytes(3 << 20).errorRatio(0.5)
+                .messages("user {id} logged in", "cache hit").errors("timeout after {} ms").write(log);
+        assertThat(size).isEqualTo(Files.size(log)).isGreaterThanOrEqualTo(3 << 20);
+        List<String> messages = Files.readAllLines(log).stream()
+                .map(line -> Entry.parse(line, Entry.Format.LOG_ENTRY))
+                .filter(Objects::nonNull)
+                .map(entry -> MessageTemplates.normalize(entry.getMessage()))
+                .distinct()
+                .sorted()
+                .collect(Collectors.toList());
+        assertThat(messages).containsExactly("cache hit", "timeout after <*> ms", "user <*> logged in");
+    }
+}
@@ -0,0 +1,201 @@
+package schrader.stream.test.parallel;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.StringJoiner;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+// "level = error AND time in [a, b) GROUP BY second COUNT" over a LOG_ENTRY file. The query is
+// lazy, count() plans and runs it: a time range narrows the file to its TimeIndex slice, the
+// EntryBatch columns drop the lines of other levels on their level bytes before any timestamp is
+// decoded, the time range is checked on the decoded survivors only. Slices below PARALLEL_BYTES
+// are scanned on the caller thread, larger ones in chunks on the common pool. A query may be counted
+// by several threads at once, the lines scanned are reported per run in a Stats.
+final class LogQuery {
+
+    static final long PARALLEL_BYTES = 8 * MappedLines.MIN_CHUNK_SIZE;
+
+    private final Path log;
+    private byte[] levels = {};
+    private Instant from;
+    private Instant to;
+    private ChronoUnit unit = ChronoUnit.SECONDS;
+
+    private LogQuery(Path log) {
+        this.log = log;
+    }
+
+    static LogQuery from(Path log) {
+        return new LogQuery(log);
+    }
+
+    // level = a OR b ..
+    LogQuery level(byte... levels) {
+        this.levels = levels.clone();
+        return this;
+    }
+
+    // time in [from, to)
+    LogQuery between(Instant from, Instant to) {
+        this.from = from;
+        this.to = to;
+        return this;
+    }
+
+    // SECONDS up to DAYS, the groups are keyed by the epoch second they start at
+    LogQuery groupBy(ChronoUnit unit) {
+        if (unit.compareTo(ChronoUnit.SECONDS) < 0 || unit.compareTo(ChronoUnit.DAYS) > 0) {
+            throw new IllegalArgumentException("unit out of SECONDS..DAYS: " + unit);
+        }
+        this.unit = unit;
+        return this;
+    }
+
+    Path log() {
+        return log;
+    }
+
+    SortedCounts count() throws IOException {
+        return count(new Stats());
+    }
+
+    SortedCounts count(Stats stats) throws IOException {
+        return count(0, Files.size(log), stats);
+    }
+
+    // the lines of bytes [start, end) only, start at a line start, e.g. the tail appended to a log
+    // since an earlier count (see QueryResultCache)
+    SortedCounts count(long start, long end) throws IOException {
+        return count(start, end, new Stats());
+    }
+
+    SortedCounts count(long start, long end, Stats stats) throws IOException {
+        Plan plan = plan(start, end);
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.READ)) {
+            Stream<MappedLines.Chunk> chunks = MappedLines.chunks(channel, plan.start, plan.end, plan.chunkSize);
+            return (plan.parallel ? chunks : chunks.sequential())
+                    .map(chunk -> count(chunk, stats))
+                    .reduce(LongCountMap::merge)
+                    .orElseGet(LongCountMap::new)
+                    .sorted();
+        }
+    }
+
+    // the steps count() takes, e.g. to tell whether it runs in parallel
+    String explain() throws IOException {
+        Plan plan = plan(0, Files.size(log));
+        List<String> steps = new ArrayList<>();
+        steps.add(String.format("scan bytes [%d, %d) of %s %s", plan.start, plan.end, log.getFileName(),
+                plan.parallel ? "in parallel chunks of " + plan.chunkSize : "sequentially"));
+        if (levels.length > 0) {
+            steps.add("keep " + levelNames() + " on the level bytes");
+        }
+        steps.add("decode timestamps");
+        if (from != null) {
+            steps.add("keep [" + from + ", " + to + ")");
+        }
+        steps.add("count per " + unit.toString().toLowerCase(Locale.ROOT));
+        return String.join(" -> ", steps);
+    }
+
+    @Override
+    public String toString() {
+        StringJoiner where = new StringJoiner(" AND ", "", " ");
+        where.setEmptyValue("");
+        if (levels.length > 0) {
+            where.add("level = " + levelNames());
+        }
+        if (from != null) {
+            where.add("time in [" + from + ", " + to + ")");
+        }
+        String unitName = unit.toString().toLowerCase(Locale.ROOT);
+        return where + "GROUP BY " + unitName.substring(0, unitName.length() - 1) + " COUNT";
+    }
+
+    private String levelNames() {
+        List<String> names = new ArrayList<>();
+        for (byte level : levels) {
+            names.add(Levels.name(level));
+        }
+        return names.size() == 1 ? names.get(0) : "(" + String.join(" OR ", names) + ")";
+    }
+
+    // the index covers the whole file, a tail is scanned without it
+    private Plan plan(long start, long end) throws IOException {
+        if (from != null && start == 0) {
+            long[] slice = TimeIndex.open(log).slice(from, to);
+            start = slice[0];
+            end = Math.min(end, slice[1]);
+        }
+        end = Math.max(start, end);
+        boolean parallel = end - start >= PARALLEL_BYTES;
+        long chunkSize = parallel ? MappedLines.chunkSize(end - start, ForkJoinPool.getCommonPoolParallelism())
+                : Math.max(end - start, 1);
+        return new Plan(start, end, chunkSize, parallel);
+    }
+
+    private LongCountMap count(MappedLines.Chunk chunk, Stats stats) {
+        EntryBatch batch = new EntryBatch();
+        if (levels.length > 0) {
+            batch.levels(levels);
+        }
+        long unitSeconds = unit.getDuration().getSeconds();
+        long fromSecond = from == null ? Long.MIN_VALUE : from.getEpochSecond();
+        long toSecond = to == null ? Long.MAX_VALUE : to.getEpochSecond();
+        LongCountMap counts = new LongCountMap();
+        batch.forEachBatch(chunk.buffer(), 0, filled -> {
+            stats.lines.add(filled.lines());
+            stats.decoded.add(filled.decoded());
+            for (int i = 0; i < filled.size(); i++) {
+                long second = filled.epochSecond(i);
+                if (from != null && (second < fromSecond || second > toSecond
+                        || (second == fromSecond && filled.nano(i) < from.getNano())
+                        || (second == toSecond && filled.nano(i) >= to.getNano()))) {
+                    continue;
+                }
+                counts.add(Math.floorDiv(second, unitSeconds) * unitSeconds, 1);
+            }
+        });
+        return counts;
+    }
+
+    // lines scanned and timestamps decoded by the count() runs given this
+    static final class Stats {
+
+        private final LongAdder lines = new LongAdder();
+        private final LongAdder decoded = new LongAdder();
+
+        long lines() {
+            return lines.sum();
+        }
+
+        long decoded() {
+            return decoded.sum();
+        }
+    }
+
+    private static final class Plan {
+
+        final long start;
+        final long end;
+        final long chunkSize;
+        final boolean parallel;
+
+        Plan(long start, long end, long chunkSize, boolean parallel) {
+            this.start = start;
+            this.end = end;
+            this.chunkSize = chunkSize;
+            this.parallel = parallel;
+        }
+    }
+}
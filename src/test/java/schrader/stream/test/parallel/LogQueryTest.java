@@ -0,0 +1,62 @@
+package schrader.stream.test.parallel;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LogQueryTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void countsErrorsDecodingTheirTimestampsOnly() throws IOException {
+        Path log = dir.resolve("app.log");
+        LogGenerator.write(log, 200_000, 22);
+        LogQuery query = LogQuery.from(log).level(Levels.ERROR).groupBy(ChronoUnit.SECONDS);
+        LogQuery.Stats stats = new LogQuery.Stats();
+        SortedCounts counts = query.count(stats);
+        try (Stream<String> lines = Files.lines(log)) {
+            assertThat(counts.toMap()).isEqualTo(Consolidations.countPerEpochSecond(lines).toMap());
+        }
+        assertThat(stats.lines()).isEqualTo(200_000);
+        assertThat(stats.decoded()).isEqualTo(counts.total()).isLessThan(200_000 / 50);
+        assertThat(query.explain()).contains("in parallel chunks", "keep error on the level bytes");
+        assertThat(query.toString()).isEqualTo("level = error GROUP BY second COUNT");
+    }
+
+    @Test
+    void timeRangeAndMinutes() throws IOException {
+        Path log = dir.resolve("app.log");
+        LogGenerator.write(log, 100_000, 22);
+        Instant from = Instant.parse("2019-02-12T09:01:00.500Z");
+        Instant to = Instant.parse("2019-02-12T09:02:30Z");
+        LogQuery query = LogQuery.from(log).level(Levels.ERROR, Levels.WARN).between(from, to).groupBy(ChronoUnit.MINUTES);
+        Map<Long, Long> expected;
+        try (Stream<String> lines = Files.lines(log)) {
+            expected = lines.map(line -> Entry.parse(line, Entry.Format.LOG_ENTRY))
+                    .filter(e -> e.level.equals("error") || e.level.equals("warn"))
+                    .filter(e -> !e.getTimeStamp().isBefore(from) && e.getTimeStamp().isBefore(to))
+                    .collect(Collectors.groupingBy(e -> e.getEpochSecond() / 60 * 60, TreeMap::new, Collectors.counting()));
+        }
+        LogQuery.Stats stats = new LogQuery.Stats();
+        assertThat(query.count(stats).toMap()).isEqualTo(expected).hasSize(2);
+        assertThat(stats.lines()).isLessThan(100_000 / 2); // the TimeIndex slice only
+        assertThat(query.explain()).contains("sequentially", "keep (error OR warn)");
+        assertThat(query.toString())
+                .isEqualTo("level = (error OR warn) AND time in [" + from + ", " + to + ") GROUP BY minute COUNT");
+        assertThatThrownBy(() -> query.groupBy(ChronoUnit.MILLIS)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
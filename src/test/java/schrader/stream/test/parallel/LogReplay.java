@@ -0,0 +1,93 @@
+package schrader.stream.test.parallel;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+// Load generator for the IngestServer: sends the lines of a log at a given rate, 0 for as fast as
+// possible. Over TCP the lines go as they are, over UDP every line is a datagram of its own.
+final class LogReplay {
+
+    private static final int BLOCK_SIZE = 64 << 10;
+
+    private final Path log;
+    private final int linesPerSecond;
+    private final long started = System.nanoTime();
+    private long sent;
+
+    private LogReplay(Path log, int linesPerSecond) {
+        this.log = log;
+        this.linesPerSecond = linesPerSecond;
+    }
+
+    // returns the number of lines sent
+    static long tcp(Path log, InetSocketAddress to, int linesPerSecond) throws IOException, InterruptedException {
+        return new LogReplay(log, linesPerSecond).tcp(to);
+    }
+
+    static long udp(Path log, InetSocketAddress to, int linesPerSecond) throws IOException, InterruptedException {
+        return new LogReplay(log, linesPerSecond).udp(to);
+    }
+
+    private long tcp(InetSocketAddress to) throws IOException, InterruptedException {
+        try (FileChannel in = FileChannel.open(log, StandardOpenOption.READ); SocketChannel out = SocketChannel.open(to)) {
+            for (Iterator<MappedLines.Chunk> chunks = MappedLines.chunks(in, BLOCK_SIZE).iterator(); chunks.hasNext(); ) {
+                ByteBuffer chunk = chunks.next().buffer();
+                pace(lines(chunk));
+                while (chunk.hasRemaining()) {
+                    out.write(chunk);
+                }
+            }
+        }
+        return sent;
+    }
+
+    private long udp(InetSocketAddress to) throws IOException, InterruptedException {
+        try (FileChannel in = FileChannel.open(log, StandardOpenOption.READ); DatagramChannel out = DatagramChannel.open().connect(to)) {
+            for (Iterator<MappedLines.Chunk> chunks = MappedLines.chunks(in, BLOCK_SIZE).iterator(); chunks.hasNext(); ) {
+                ByteBuffer chunk = chunks.next().buffer();
+                for (int start = 0; start < chunk.limit(); ) {
+                    int end = start;
+                    while (end < chunk.limit() && chunk.get(end) != '\n') {
+                        end++;
+                    }
+                    pace(1);
+                    out.write(chunk.limit(end).position(start));
+                    start = end + 1;
+                    chunk.limit(chunk.capacity());
+                }
+            }
+        }
+        return sent;
+    }
+
+    // a last line without newline counts as well
+    private static int lines(ByteBuffer chunk) {
+        int lines = 0;
+        for (int i = 0; i < chunk.limit(); i++) {
+            if (chunk.get(i) == '\n') {
+                lines++;
+            }
+        }
+        return chunk.limit() > 0 && chunk.get(chunk.limit() - 1) != '\n' ? lines + 1 : lines;
+    }
+
+    // sleeps until the lines are due
+    private void pace(int lines) throws InterruptedException {
+        sent += lines;
+        if (linesPerSecond > 0) {
+            long due = started + sent * TimeUnit.SECONDS.toNanos(1) / linesPerSecond;
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+        }
+    }
+}
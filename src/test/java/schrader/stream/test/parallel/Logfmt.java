@@ -0,0 +1,85 @@
+package schrader.stream.test.parallel;
+
+// Space separated key=value pairs, values with spaces quoted:
+// time=2019-02-12T10:15:30.123+01:00 level=error msg="connection refused"
+// A quoted message with escape sequences is unescaped like a JSON string, see JsonLines.
+final class Logfmt {
+
+    private static final String[] TIME = {"time", "ts", "timestamp"};
+    private static final String[] LEVEL = {"level", "lvl", "severity"};
+    private static final String[] MESSAGE = {"msg", "message"};
+
+    private Logfmt() {
+    }
+
+    static Entry parse(String line) {
+        int length = line.length();
+        int timeStart = -1, timeEnd = -1, levelStart = -1, levelEnd = -1, messageStart = length, messageEnd = length;
+        boolean messageQuoted = false;
+        for (int p = 0; p < length; ) {
+            while (p < length && line.charAt(p) == ' ') {
+                p++;
+            }
+            int keyStart = p;
+            while (p < length && line.charAt(p) != '=' && line.charAt(p) != ' ') {
+                p++;
+            }
+            int keyEnd = p;
+            if (p >= length || line.charAt(p) != '=') {
+                continue; // a bare key
+            }
+            int valueStart = ++p;
+            int valueEnd;
+            boolean quoted = p < length && line.charAt(p) == '"';
+            if (quoted) {
+                valueStart = ++p;
+                while (p < length && line.charAt(p) != '"') {
+                    p += line.charAt(p) == '\\' ? 2 : 1;
+                }
+                if (p >= length) {
+                    return null;
+                }
+                valueEnd = p++;
+            } else {
+                while (p < length && line.charAt(p) != ' ') {
+                    p++;
+                }
+                valueEnd = p;
+            }
+            if (JsonLines.isOneOf(line, keyStart, keyEnd, TIME)) {
+                timeStart = valueStart;
+                timeEnd = valueEnd;
+            } else if (JsonLines.isOneOf(line, keyStart, keyEnd, LEVEL)) {
+                levelStart = valueStart;
+                levelEnd = valueEnd;
+            } else if (JsonLines.isOneOf(line, keyStart, keyEnd, MESSAGE)) {
+                messageStart = valueStart;
+                messageEnd = valueEnd;
+                messageQuoted = quoted;
+            }
+        }
+        if (timeStart < 0 || levelStart < 0) {
+            return null;
+        }
+        ParsedEntry entry = new ParsedEntry();
+        if (!Timestamps.parse(line, timeStart, timeEnd, entry)) {
+            return null;
+        }
+        entry.level = Levels.nameIgnoreCase(line, levelStart, levelEnd);
+        int escape = messageQuoted ? line.indexOf('\\', messageStart) : -1;
+        if (escape >= 0 && escape < messageEnd) {
+            String message = JsonLines.unescape(line, messageStart, messageEnd);
+            if (message == null) {
+                return null;
+            }
+            entry.line = message;
+            entry.messageStart = 0;
+            entry.messageEnd = message.length();
+        } else {
+            entry.line = line;
+            entry.messageStart = messageStart;
+            entry.messageEnd = messageEnd;
+        }
+        return entry;
+    }
+}
@@ -0,0 +1,195 @@
+package schrader.stream.test.parallel;
+
+import java.util.Arrays;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collector;
+
+// Open-addressing long -> long count table (linear probing, no boxing).
+final class LongCountMap {
+
+    private static final long FREE = Long.MIN_VALUE; // marks an empty slot, the key itself is counted aside
+    private static final long PHI = 0x9E3779B97F4A7C15L;
+
+    private long[] keys;
+    private long[] counts;
+    private int shift;
+    private int size;
+    private boolean hasFreeKey;
+    private long freeKeyCount;
+
+    LongCountMap() {
+        this(64);
+    }
+
+    LongCountMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(expectedSize, 4) * 2 - 1) << 1;
+        allocate(capacity);
+    }
+
+    // Collects into per-thread tables which are merged when the stream joins its tasks,
+    // the finisher emits the (key, count) pairs sorted by key.
+    static <T> Collector<T, LongCountMap, SortedCounts> counting(ToLongFunction<? super T> key) {
+        return Collector.of(LongCountMap::new,
+                (map, t) -> map.add(key.applyAsLong(t), 1),
+                LongCountMap::merge,
+                LongCountMap::sorted,
+                Collector.Characteristics.UNORDERED);
+    }
+
+    void add(long key, long delta) {
+        if (key == FREE) {
+            hasFreeKey = true;
+            freeKeyCount += delta;
+            return;
+        }
+        int mask = keys.length - 1;
+        for (int i = slot(key); ; i = (i + 1) & mask) {
+            long k = keys[i];
+            if (k == key) {
+                counts[i] += delta;
+                return;
+            }
+            if (k == FREE) {
+                keys[i] = key;
+                counts[i] = delta;
+                if (++size > keys.length >> 1) {
+                    rehash(keys.length << 1);
+                }
+                return;
+            }
+        }
+    }
+
+    // min and max keep the smaller or larger of the value and the one held for the key
+    void min(long key, long value) {
+        reduce(key, value, false);
+    }
+
+    void max(long key, long value) {
+        reduce(key, value, true);
+    }
+
+    private void reduce(long key, long value, boolean max) {
+        if (key == FREE) {
+            freeKeyCount = !hasFreeKey ? value : max ? Math.max(freeKeyCount, value) : Math.min(freeKeyCount, value);
+            hasFreeKey = true;
+            return;
+        }
+        int mask = keys.length - 1;
+        for (int i = slot(key); ; i = (i + 1) & mask) {
+            long k = keys[i];
+            if (k == key) {
+                counts[i] = max ? Math.max(counts[i], value) : Math.min(counts[i], value);
+                return;
+            }
+            if (k == FREE) {
+                keys[i] = key;
+                counts[i] = value;
+                if (++size > keys.length >> 1) {
+                    rehash(keys.length << 1);
+                }
+                return;
+            }
+        }
+    }
+
+    long get(long key) {
+        if (key == FREE) {
+            return freeKeyCount;
+        }
+        int mask = keys.length - 1;
+        for (int i = slot(key); ; i = (i + 1) & mask) {
+            long k = keys[i];
+            if (k == key) {
+                return counts[i];
+            }
+            if (k == FREE) {
+                return 0;
+            }
+        }
+    }
+
+    // adds the smaller table into the larger one and returns the latter
+    LongCountMap merge(LongCountMap other) {
+        if (other.size() > size()) {
+            forEach(other::add);
+            return other;
+        }
+        other.forEach(this::add);
+        return this;
+    }
+
+    int size() {
+        return size + (hasFreeKey ? 1 : 0);
+    }
+
+    boolean isEmpty() {
+        return size() == 0;
+    }
+
+    void clear() {
+        Arrays.fill(keys, FREE);
+        size = 0;
+        hasFreeKey = false;
+        freeKeyCount = 0;
+    }
+
+    void forEach(KeyCountConsumer consumer) {
+        if (hasFreeKey) {
+            consumer.accept(FREE, freeKeyCount);
+        }
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != FREE) {
+                consumer.accept(keys[i], counts[i]);
+            }
+        }
+    }
+
+    SortedCounts sorted() {
+        long[] sortedKeys = new long[size()];
+        int n = 0;
+        if (hasFreeKey) {
+            sortedKeys[n++] = FREE;
+        }
+        for (long k : keys) {
+            if (k != FREE) {
+                sortedKeys[n++] = k;
+            }
+        }
+        Arrays.sort(sortedKeys);
+        long[] sortedCounts = new long[n];
+        for (int i = 0; i < n; i++) {
+            sortedCounts[i] = get(sortedKeys[i]);
+        }
+        return new SortedCounts(sortedKeys, sortedCounts, n);
+    }
+
+    private int slot(long key) {
+        return (int) ((key * PHI) >>> shift);
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        counts = new long[capacity];
+        Arrays.fill(keys, FREE);
+        shift = 64 - Integer.numberOfTrailingZeros(capacity);
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        long[] oldCounts = counts;
+        allocate(capacity);
+        int mask = capacity - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            long key = oldKeys[j];
+            if (key != FREE) {
+                int i = slot(key);
+                while (keys[i] != FREE) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = key;
+                counts[i] = oldCounts[j];
+            }
+        }
+    }
+}
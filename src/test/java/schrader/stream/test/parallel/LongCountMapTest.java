@@ -0,0 +1,55 @@
+package schrader.stream.test.parallel;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LongCountMapTest {
+
+    @Test
+    void countsLikeHashMap() {
+        SplittableRandom random = new SplittableRandom(42);
+        LongCountMap map = new LongCountMap(4);
+        Map<Long, Long> expected = new HashMap<>();
+        for (int i = 0; i < 100_000; i++) {
+            long key = i % 1000 == 0 ? Long.MIN_VALUE : random.nextLong(-5_000, 5_000);
+            map.add(key, 1);
+            expected.merge(key, 1L, Long::sum);
+        }
+        assertThat(map.size()).isEqualTo(expected.size());
+        expected.forEach((k, v) -> assertThat(map.get(k)).isEqualTo(v));
+        assertThat(map.get(10_000)).isZero();
+    }
+
+    @Test
+    void mergeAddsCounts() {
+        LongCountMap small = new LongCountMap();
+        LongCountMap large = new LongCountMap();
+        small.add(1, 2);
+        small.add(Long.MIN_VALUE, 1);
+        LongStream.range(0, 100).forEach(l -> large.add(l, 1));
+        LongCountMap merged = small.merge(large);
+        assertThat(merged.size()).isEqualTo(101);
+        assertThat(merged.get(1)).isEqualTo(3);
+        assertThat(merged.get(Long.MIN_VALUE)).isEqualTo(1);
+        assertThat(merged.sorted().total()).isEqualTo(103);
+    }
+
+    @Test
+    void collectorEmitsSortedCounts() {
+        SortedCounts counts = LongStream.range(0, 1_000_000).parallel().boxed()
+                .collect(LongCountMap.counting(l -> l % 1000 - 500));
+        Map<Long, Long> expected = LongStream.range(0, 1_000_000).boxed()
+                .collect(Collectors.groupingBy(l -> l % 1000 - 500, TreeMap::new, Collectors.counting()));
+        assertThat(counts.stream().collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue))).isEqualTo(expected);
+        assertThat(counts.stream().map(Map.Entry::getKey)).isSorted();
+        assertThat(counts.total()).isEqualTo(1_000_000);
+    }
+}
@@ -0,0 +1,114 @@
+package schrader.stream.test.parallel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.LongUnaryOperator;
+import java.util.function.ObjLongConsumer;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+// Group-and-reduce for primitive streams, which take no Collector: collect() runs the three argument
+// collect of the stream into per-thread LongCountMaps, merged when the stream joins its tasks. No
+// value is boxed, the memory is that of the distinct keys. The finisher emits the keys in order with
+// the sum, count, min or max in SortedCounts.count(i), or a LongHistogram per key.
+final class LongGrouping<A, R> {
+
+    private final Supplier<A> supplier;
+    private final ObjLongConsumer<A> accumulator;
+    private final BiConsumer<A, A> combiner;
+    private final Function<A, R> finisher;
+
+    private LongGrouping(Supplier<A> supplier, ObjLongConsumer<A> accumulator, BiConsumer<A, A> combiner,
+                         Function<A, R> finisher) {
+        this.supplier = supplier;
+        this.accumulator = accumulator;
+        this.combiner = combiner;
+        this.finisher = finisher;
+    }
+
+    static LongGrouping<LongCountMap, SortedCounts> counting(LongUnaryOperator key) {
+        return new LongGrouping<>(LongCountMap::new,
+                (map, value) -> map.add(key.applyAsLong(value), 1),
+                (left, right) -> right.forEach(left::add),
+                LongCountMap::sorted);
+    }
+
+    static LongGrouping<LongCountMap, SortedCounts> summing(LongUnaryOperator key) {
+        return new LongGrouping<>(LongCountMap::new,
+                (map, value) -> map.add(key.applyAsLong(value), value),
+                (left, right) -> right.forEach(left::add),
+                LongCountMap::sorted);
+    }
+
+    static LongGrouping<LongCountMap, SortedCounts> minimizing(LongUnaryOperator key) {
+        return new LongGrouping<>(LongCountMap::new,
+                (map, value) -> map.min(key.applyAsLong(value), value),
+                (left, right) -> right.forEach(left::min),
+                LongCountMap::sorted);
+    }
+
+    static LongGrouping<LongCountMap, SortedCounts> maximizing(LongUnaryOperator key) {
+        return new LongGrouping<>(LongCountMap::new,
+                (map, value) -> map.max(key.applyAsLong(value), value),
+                (left, right) -> right.forEach(left::max),
+                LongCountMap::sorted);
+    }
+
+    // the distribution of the non-negative values per key, to a relative error of 2^-bits
+    static LongGrouping<Histograms, SortedMap<Long, LongHistogram>> histogram(LongUnaryOperator key, int bits) {
+        return new LongGrouping<>(() -> new Histograms(bits),
+                (histograms, value) -> histograms.get(key.applyAsLong(value)).record(value),
+                Histograms::merge,
+                Histograms::sorted);
+    }
+
+    R collect(LongStream values) {
+        return finisher.apply(values.collect(supplier, accumulator, combiner));
+    }
+
+    R collect(IntStream values) {
+        return finisher.apply(values.collect(supplier, accumulator::accept, combiner));
+    }
+
+    // a histogram per key, the table maps a key to its list index + 1
+    static final class Histograms {
+
+        private final int bits;
+        private final LongCountMap index = new LongCountMap();
+        private final List<LongHistogram> histograms = new ArrayList<>();
+        private final List<Long> keys = new ArrayList<>();
+
+        private Histograms(int bits) {
+            this.bits = bits;
+        }
+
+        LongHistogram get(long key) {
+            long i = index.get(key);
+            if (i == 0) {
+                histograms.add(new LongHistogram(bits));
+                keys.add(key);
+                index.add(key, i = histograms.size());
+            }
+            return histograms.get((int) i - 1);
+        }
+
+        void merge(Histograms other) {
+            for (int i = 0; i < other.histograms.size(); i++) {
+                get(other.keys.get(i)).merge(other.histograms.get(i));
+            }
+        }
+
+        SortedMap<Long, LongHistogram> sorted() {
+            SortedMap<Long, LongHistogram> sorted = new TreeMap<>();
+            for (int i = 0; i < histograms.size(); i++) {
+                sorted.put(keys.get(i), histograms.get(i));
+            }
+            return sorted;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package schrader.stream.test.parallel;
+
+import org.assertj.core.data.Percentage;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LongGroupingTest {
+
+    private static final long N = 1_000_000;
+
+    @Test
+    void reducesLikeBoxedGrouping() {
+        assertThat(LongGrouping.summing(v -> v % 1000).collect(values()).toMap())
+                .isEqualTo(expected(Collectors.summingLong(Long::longValue)));
+        assertThat(LongGrouping.counting(v -> v % 1000).collect(values()).toMap())
+                .isEqualTo(expected(Collectors.counting()));
+        assertThat(LongGrouping.minimizing(v -> v % 1000).collect(values()).toMap())
+                .isEqualTo(expected(Collectors.collectingAndThen(Collectors.minBy(Long::compare), o -> o.get())));
+        assertThat(LongGrouping.maximizing(v -> v % 1000).collect(values()).toMap())
+                .isEqualTo(expected(Collectors.collectingAndThen(Collectors.maxBy(Long::compare), o -> o.get())));
+    }
+
+    @Test
+    void groupsIntStreams() {
+        int[] values = {1, 1, 2, 2, 2, 3, 4, 4, 4, 4, 4, 5, 6, 7, 7, 8, 9, 7, 7, 4, 5};
+        SortedCounts sums = LongGrouping.summing(v -> v).collect(IntStream.of(values).parallel());
+        assertThat(sums.toMap()).containsExactly(Map.entry(1L, 2L), Map.entry(2L, 6L), Map.entry(3L, 3L),
+                Map.entry(4L, 24L), Map.entry(5L, 10L), Map.entry(6L, 6L), Map.entry(7L, 28L), Map.entry(8L, 8L),
+                Map.entry(9L, 9L));
+        assertThat(LongGrouping.minimizing(v -> Long.MIN_VALUE).collect(IntStream.of(values)).count(0)).isEqualTo(1);
+    }
+
+    @Test
+    void histogramPerKey() {
+        SortedMap<Long, LongHistogram> histograms = LongGrouping.histogram(v -> v % 2, 7).collect(values());
+        assertThat(histograms).containsOnlyKeys(0L, 1L);
+        LongHistogram even = histograms.get(0L);
+        assertThat(even.count()).isEqualTo(N / 2);
+        assertThat(even.min()).isZero();
+        assertThat(even.max()).isEqualTo(N - 2);
+        assertThat((double) even.percentile(50)).isCloseTo(N / 2.0, Percentage.withPercentage(1));
+        assertThat(even.percentile(100)).isEqualTo(N - 2);
+    }
+
+    private static LongStream values() {
+        return LongStream.range(0, N).parallel();
+    }
+
+    private static Map<Long, Long> expected(Collector<Long, ?, Long> reduction) {
+        return LongStream.range(0, N).boxed()
+                .collect(Collectors.groupingBy(v -> v % 1000, TreeMap::new, reduction));
+    }
+}
@@ -0,0 +1,105 @@
+package schrader.stream.test.parallel;
+
+import java.util.Arrays;
+
+// Log-linear histogram of non-negative longs in the manner of HdrHistogram: values below 2^bits are
+// counted exactly, larger ones in 2^bits sub-buckets per power of two, i.e. to a relative error of
+// at most 2^-bits. The bucket array grows with the largest value recorded.
+final class LongHistogram {
+
+    private final int bits;
+    private long[] counts;
+    private long total;
+    private long min = Long.MAX_VALUE;
+    private long max = Long.MIN_VALUE;
+
+    LongHistogram(int bits) {
+        if (bits < 1 || bits > 16) {
+            throw new IllegalArgumentException("bits must be within 1..16: " + bits);
+        }
+        this.bits = bits;
+        this.counts = new long[2 << bits];
+    }
+
+    void record(long value) {
+        record(value, 1);
+    }
+
+    void record(long value, long count) {
+        if (value < 0) {
+            throw new IllegalArgumentException("negative value: " + value);
+        }
+        int i = bucket(value);
+        if (i >= counts.length) {
+            counts = Arrays.copyOf(counts, Math.max(i + 1, counts.length * 2));
+        }
+        counts[i] += count;
+        total += count;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    // adds the other histogram of the same precision
+    LongHistogram merge(LongHistogram other) {
+        if (other.bits != bits) {
+            throw new IllegalArgumentException("precision differs: " + other.bits + " != " + bits);
+        }
+        if (other.counts.length > counts.length) {
+            counts = Arrays.copyOf(counts, other.counts.length);
+        }
+        for (int i = 0; i < other.counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        total += other.total;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        return this;
+    }
+
+    long count() {
+        return total;
+    }
+
+    long min() {
+        return min;
+    }
+
+    long max() {
+        return max;
+    }
+
+    // the largest value of the bucket holding the percentile (0 < percentile <= 100), capped at max()
+    long percentile(double percentile) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(max, highest(i));
+            }
+        }
+        return max;
+    }
+
+    int bucket(long value) {
+        if (value < 1L << bits) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value); // >= bits
+        int shift = exponent - bits;
+        return ((shift + 1) << bits) + (int) ((value >>> shift) & ((1 << bits) - 1));
+    }
+
+    // the largest value counted in bucket i
+    long highest(int i) {
+        if (i < 1 << bits) {
+            return i;
+        }
+        int shift = (i >>> bits) - 1;
+        long lowest = ((1L << bits) | (i & ((1 << bits) - 1))) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,45 @@
+package schrader.stream.test.parallel;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LongHistogramTest {
+
+    @Test
+    void bucketsHoldTheirValues() {
+        LongHistogram histogram = new LongHistogram(5);
+        SplittableRandom random = new SplittableRandom(21);
+        for (int n = 0; n < 100_000; n++) {
+            long value = random.nextLong(Long.MAX_VALUE) >>> random.nextInt(63);
+            int i = histogram.bucket(value);
+            assertThat(histogram.highest(i)).isGreaterThanOrEqualTo(value);
+            assertThat(histogram.highest(i) - value).isLessThanOrEqualTo(value >> 5);
+            assertThat(i == 0 || histogram.highest(i - 1) < value).isTrue();
+        }
+        assertThat(histogram.highest(histogram.bucket(Long.MAX_VALUE))).isEqualTo(Long.MAX_VALUE);
+    }
+
+    @Test
+    void percentilesWithinTheRelativeError() {
+        LongHistogram left = new LongHistogram(7);
+        LongHistogram right = new LongHistogram(7);
+        for (long v = 1; v <= 100_000; v++) {
+            (v % 2 == 0 ? left : right).record(v * 1000);
+        }
+        LongHistogram merged = left.merge(right);
+        assertThat(merged.count()).isEqualTo(100_000);
+        assertThat(merged.min()).isEqualTo(1000);
+        assertThat(merged.max()).isEqualTo(100_000_000);
+        for (double p : new double[]{1, 50, 90, 99, 99.9}) {
+            long exact = (long) Math.ceil(p * 1000) * 1000;
+            assertThat(merged.percentile(p)).isBetween(exact, exact + exact / 128);
+        }
+        assertThat(merged.percentile(100)).isEqualTo(100_000_000);
+        assertThatThrownBy(() -> merged.record(-1)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> merged.merge(new LongHistogram(5))).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,164 @@
+package schrader.stream.test.parallel;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+// Memory-maps a (UTF-8) text file and cuts it into newline aligned chunks, which are split
+// evenly by the SIZED/SUBSIZED chunk spliterator instead of the line-by-line Files.lines() reader.
+final class MappedLines {
+
+    static final long MIN_CHUNK_SIZE = 1 << 20;
+    static final long MAX_CHUNK_SIZE = 1 << 30;
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private MappedLines() {
+    }
+
+    static Stream<String> lines(Path path) throws IOException {
+        return chunks(path).flatMap(Chunk::lines);
+    }
+
+    static Stream<Chunk> chunks(Path path) throws IOException {
+        return chunks(path, ForkJoinPool.getCommonPoolParallelism());
+    }
+
+    static Stream<Chunk> chunks(Path path, int parallelism) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return chunks(channel, chunkSize(channel.size(), parallelism));
+        }
+    }
+
+    static long chunkSize(long bytes, int parallelism) {
+        long chunks = (long) parallelism * CHUNKS_PER_THREAD;
+        return Math.min(Math.max((bytes + chunks - 1) / chunks, MIN_CHUNK_SIZE), MAX_CHUNK_SIZE);
+    }
+
+    static Stream<Chunk> chunks(FileChannel channel, long chunkSize) throws IOException {
+        return chunks(channel, 0, channel.size(), chunkSize);
+    }
+
+    // Every chunk is mapped as a region of its own, so files larger than 2 GB need no special handling.
+    // 'from' has to be the start of a line.
+    static Stream<Chunk> chunks(FileChannel channel, long from, long to, long chunkSize) throws IOException {
+        List<Chunk> chunks = new ArrayList<>();
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+        for (long start = from; start < to; ) {
+            long end = start + chunkSize >= to ? to : nextLineStart(channel, start + chunkSize, to, probe);
+            if (end - start > Integer.MAX_VALUE) {
+                throw new IOException("line at offset " + start + " exceeds the maximum mapping size");
+            }
+            chunks.add(new Chunk(start, channel.map(FileChannel.MapMode.READ_ONLY, start, end - start)));
+            start = end;
+        }
+        Spliterator<Chunk> spliterator = Spliterators.spliterator(chunks.toArray(new Chunk[0]),
+                Spliterator.ORDERED | Spliterator.IMMUTABLE | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, true);
+    }
+
+    private static long nextLineStart(FileChannel channel, long position, long size, ByteBuffer probe) throws IOException {
+        while (position < size) {
+            probe.clear();
+            int n = channel.read(probe, position);
+            for (int i = 0; i < n; i++) {
+                if (probe.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += n;
+        }
+        return size;
+    }
+
+    // fills the buffer from the position on, fails if the file ends first
+    static void readFully(FileChannel channel, ByteBuffer into, long position) throws IOException {
+        while (into.hasRemaining()) {
+            if (channel.read(into, position + into.position()) < 0) {
+                throw new IOException("file truncated at " + (position + into.position()));
+            }
+        }
+    }
+
+    static final class Chunk {
+
+        final long offset; // of the first byte in the file
+        private final ByteBuffer buffer;
+
+        Chunk(long offset, ByteBuffer buffer) {
+            this.offset = offset;
+            this.buffer = buffer;
+        }
+
+        // independent view on the chunk bytes, positioned at 0
+        ByteBuffer buffer() {
+            return buffer.duplicate();
+        }
+
+        int size() {
+            return buffer.limit();
+        }
+
+        Stream<String> lines() {
+            return StreamSupport.stream(new LineSpliterator(buffer()), false);
+        }
+
+        void forEachLine(LineConsumer consumer) {
+            LineSpliterator lines = new LineSpliterator(buffer());
+            lines.forEachRemaining(line -> consumer.accept(line, offset + lines.lineStart));
+        }
+    }
+
+    @FunctionalInterface
+    interface LineConsumer {
+
+        void accept(String line, long offset); // offset of the line in the file
+    }
+
+    private static final class LineSpliterator extends Spliterators.AbstractSpliterator<String> {
+
+        private final ByteBuffer buffer;
+        private byte[] bytes = new byte[256];
+        private int lineStart;
+
+        LineSpliterator(ByteBuffer buffer) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.IMMUTABLE | Spliterator.NONNULL);
+            this.buffer = buffer;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super String> action) {
+            int start = buffer.position();
+            int limit = buffer.limit();
+            if (start >= limit) {
+                return false;
+            }
+            int end = ByteScanner.DEFAULT.indexOf(buffer, (byte) '\n', start, limit);
+            if (end < 0) {
+                end = limit;
+            }
+            int next = end < limit ? end + 1 : end;
+            if (end > start && buffer.get(end - 1) == '\r') {
+                end--;
+            }
+            int length = end - start;
+            if (length > bytes.length) {
+                bytes = new byte[Math.max(length, bytes.length * 2)];
+            }
+            buffer.get(bytes, 0, length).position(next);
+            lineStart = start;
+            action.accept(new String(bytes, 0, length, StandardCharsets.UTF_8));
+            return true;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package schrader.stream.test.parallel;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MappedLinesTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void chunksAreNewlineAligned() throws IOException {
+        Path file = dir.resolve("lines.txt");
+        List<String> expected = IntStream.range(0, 10_000).mapToObj(i -> "Zeile " + i + " \u00e4\u00f6\u00fc").collect(Collectors.toList());
+        Files.write(file, expected);
+        try (FileChannel channel = FileChannel.open(file)) {
+            List<MappedLines.Chunk> chunks = MappedLines.chunks(channel, 1000).collect(Collectors.toList());
+            assertThat(chunks).hasSizeGreaterThan(100);
+            assertThat(chunks.stream().flatMap(MappedLines.Chunk::lines).collect(Collectors.toList())).isEqualTo(expected);
+        }
+        try (var lines = MappedLines.lines(file)) {
+            assertThat(lines.collect(Collectors.toList())).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void lastLineWithoutNewline() throws IOException {
+        Path file = dir.resolve("crlf.txt");
+        Files.writeString(file, "one\r\ntwo\r\n\r\nthree");
+        try (var lines = MappedLines.lines(file)) {
+            assertThat(lines).containsExactly("one", "two", "", "three");
+        }
+    }
+}
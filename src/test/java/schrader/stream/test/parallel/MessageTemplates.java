@@ -0,0 +1,49 @@
+package schrader.stream.test.parallel;
+
+// Reduces messages to templates: every token holding a digit (numbers, ids, addresses, UUIDs) and every
+// hex token of 8 or more characters becomes "<*>", so "request 4711 failed" and "request 42 failed"
+// count as "request <*> failed". Tokens are runs of letters, digits and "-_.:/" characters.
+final class MessageTemplates {
+
+    static final String WILDCARD = "<*>";
+    private static final int MIN_HEX_ID = 8;
+
+    private MessageTemplates() {
+    }
+
+    static String normalize(CharSequence message) {
+        return normalize(message, 0, message.length(), new StringBuilder()).toString();
+    }
+
+    // appends the template of the region to 'into' and returns it
+    static StringBuilder normalize(CharSequence s, int from, int to, StringBuilder into) {
+        int p = from;
+        while (p < to) {
+            char c = s.charAt(p);
+            if (!isTokenChar(c)) {
+                into.append(c);
+                p++;
+                continue;
+            }
+            int end = p;
+            boolean digit = false;
+            boolean hex = true;
+            while (end < to && isTokenChar(c = s.charAt(end))) {
+                digit |= c >= '0' && c <= '9';
+                hex &= Character.digit(c, 16) >= 0;
+                end++;
+            }
+            if (digit || hex && end - p >= MIN_HEX_ID) {
+                into.append(WILDCARD);
+            } else {
+                into.append(s, p, end);
+            }
+            p = end;
+        }
+        return into;
+    }
+
+    private static boolean isTokenChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '-' || c == '_' || c == '.' || c == ':' || c == '/';
+    }
+}
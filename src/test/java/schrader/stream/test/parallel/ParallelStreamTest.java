@@ -4,13 +4,16 @@ import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.net.URISyntaxException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
+import java.util.stream.LongStream;
 import java.util.stream.Stream;
 
 public class ParallelStreamTest {
@@ -39,8 +42,19 @@ public class ParallelStreamTest {
                 .forEachOrdered(System.out::println);
     }
 
+    @Test
+    public void testIntegerParallelStreamPrimitive() {
+        int[] intArray = {1, 1, 2, 2, 2, 3, 4, 4, 4, 4, 4, 5, 6, 7, 7, 8, 9, 7, 7, 4, 5};
+        LongGrouping.summing(i -> i) // no Integer and no List<Integer> per key, see LongGrouping
+                .collect(IntStream.of(intArray).parallel())
+                .forEach((key, sum) -> System.out.println(sum));
+    }
+
     @Test
     public void testLongParallelStream() {
+        long[] gc = gc();
+        long start = System.currentTimeMillis();
+        //
         Stream.iterate(0L, l -> l + 1).limit(1_000_000)
                 .parallel()
                 .collect(Collectors.groupingByConcurrent(Long::longValue))
@@ -49,43 +63,53 @@ public class ParallelStreamTest {
                 .map(this::sumLong)
                 //    .collect(Collectors.toList())
                 .forEachOrdered(System.out::println);
+        //
+        long stop = System.currentTimeMillis();
+        System.out.println(stop - start + " ms, " + gcSince(gc));
     }
 
     @Test
-    public void testFileStream() throws URISyntaxException, IOException {
-        Path in = Paths.get(getClass().getClassLoader().getResource("streams/test-100_000.log").toURI());
+    public void testLongParallelStreamPrimitive() {
+        long[] gc = gc();
+        long start = System.currentTimeMillis();
+        //
+        LongGrouping.summing(l -> l) // sums per key in per-thread primitive tables, merged at the joins
+                .collect(LongStream.iterate(0L, l -> l + 1).limit(1_000_000).parallel())
+                .forEach((key, sum) -> System.out.println(sum));
+        //
+        long stop = System.currentTimeMillis();
+        System.out.println(stop - start + " ms, " + gcSince(gc));
+    }
+
+    // collections and their milliseconds so far, over all collectors
+    private static long[] gc() {
+        long[] gc = new long[2];
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gc[0] += Math.max(0, bean.getCollectionCount());
+            gc[1] += Math.max(0, bean.getCollectionTime());
+        }
+        return gc;
+    }
+
+    private static String gcSince(long[] before) {
+        long[] now = gc();
+        return (now[0] - before[0]) + " gc, " + (now[1] - before[1]) + " ms in gc";
+    }
+
+    @Test
+    public void testFileStream() throws IOException {
+        Path in = LogGenerator.resourceOrCached("streams/test-100_000.log", 100_000);
         try (Stream<String> lines = Files.lines(in)) {
-            lines
-                    .parallel()
-                    .map(line -> Entry.of(line, Entry.Format.LOG_ENTRY))
-                    .filter(Optional::isPresent)
-                    .map(Optional::get)
-                    .filter(Entry::isError)
-                    .collect(Collectors.groupingByConcurrent(Entry::getTimeStamp)) // groups log entries by timeStamp as Map<Long, List<LogEntry>>
-                    .entrySet()
-                    .stream()
-                    .map(e -> new AbstractMap.SimpleEntry<>(e.getKey().getEpochSecond(), e.getValue().size())) // <= Map.Entry<Long, Integer>
-                    .sorted(Map.Entry.comparingByKey())
-                    .collect(Collectors.toList())
+            Consolidations.entriesPerTimeStamp(lines.parallel())
                     .forEach(e -> System.out.println(e.getKey() + " " + e.getValue())); // Map.Entry::getKey, Map.Entry::getValue
         }
     }
 
     @Test
-    public void testFileStreamModified() throws URISyntaxException, IOException {
-        Path in = Paths.get(getClass().getClassLoader().getResource("streams/test-1_000_000.log").toURI());
+    public void testFileStreamModified() throws IOException {
+        Path in = LogGenerator.resourceOrCached("streams/test-1_000_000.log", 1_000_000);
         try (Stream<String> lines = Files.lines(in)) {
-            lines
-                    .parallel()
-                    .map(line -> Entry.of(line, Entry.Format.LOG_ENTRY))
-                    .filter(Optional::isPresent)
-                    .map(Optional::get)
-                    .filter(Entry::isError)
-                    .collect(Collectors.groupingByConcurrent(Entry::getTimeStamp, Collectors.counting())) // =>  Map<Long, Integer>
-                    .entrySet()
-                    .stream()
-                    .sorted(Map.Entry.comparingByKey())
-                    .collect(Collectors.toList())
+            Consolidations.countPerTimeStamp(lines.parallel())
                     .forEach(e -> System.out.println(e.getKey() + " " + e.getValue())); // Map.Entry::getKey, Map.Entry::getValue
         }
     }
@@ -99,25 +123,61 @@ public class ParallelStreamTest {
     }
 
     @Test
-    public void testConsolidate() throws URISyntaxException, IOException {
-        long start = System.currentTimeMillis();
+    public void testConsolidate() throws IOException {
+        PipelineMetrics metrics = PipelineMetrics.enabled();
         //
-        Path in = Paths.get(getClass().getClassLoader().getResource("streams/test-1_000_000.log").toURI());
+        Path in = LogGenerator.resourceOrCached("streams/test-1_000_000.log", 1_000_000);
         Path out = Paths.get(HOME + "/Desktop/numbers_sort.txt");
-        try (Stream<String> lines = Files.lines(in); PrintWriter pw = new PrintWriter(Files.newBufferedWriter(out))) {
-            lines
-                    .parallel()
-                    .map(line -> Entry.of(line, Entry.Format.LOG_ENTRY))
-                    .filter(Optional::isPresent)
-                    .map(Optional::get)
-                    .filter(Entry::isError)
-                    // group entries by timeStamp (result. Map<Long, List<LogEnry>) and count values (result: Map<Long, Integer>)
-                    .collect(Collectors.groupingByConcurrent(Entry::getTimeStamp, Collectors.counting()))
-                    .entrySet()
-                    .stream()
-                    .sorted(Map.Entry.comparingByKey())
-                    .collect(Collectors.toList())
-                    .forEach(e -> pw.println(e.getKey() + " " + e.getValue()));
+        try (Stream<String> lines = MappedLines.lines(in); CountsWriter writer = new CountsWriter(out)) {
+            SortedCounts counts = Consolidations.countPerEpochSecond(lines.parallel(), metrics);
+            long start = metrics.start();
+            writer.write(counts);
+            metrics.stop(PipelineMetrics.Stage.WRITE, start);
+        }
+        //
+        metrics.commitEvents();
+        System.out.print(metrics.report());
+    }
+
+    @Test
+    public void testConsolidateQuery() throws IOException {
+        long start = System.currentTimeMillis();
+        //
+        Path in = LogGenerator.resourceOrCached("streams/test-1_000_000.log", 1_000_000);
+        Path out = Paths.get(HOME + "/Desktop/numbers_query.txt");
+        LogQuery query = LogQuery.from(in).level(Levels.ERROR).groupBy(ChronoUnit.SECONDS);
+        LogQuery.Stats stats = new LogQuery.Stats();
+        try (CountsWriter writer = new CountsWriter(out)) {
+            writer.write(query.count(stats)); // timestamps are decoded for the error lines only
+        }
+        //
+        long stop = System.currentTimeMillis();
+        System.out.println(query + ": " + stats.decoded() + " of " + stats.lines() + " timestamps decoded, "
+                + (stop - start) + " ms");
+    }
+
+    @Test
+    public void testConsolidateCached() throws IOException {
+        Path in = LogGenerator.resourceOrCached("streams/test-1_000_000.log", 1_000_000);
+        QueryResultCache cache = new QueryResultCache(64 << 20);
+        LogQuery query = LogQuery.from(in).level(Levels.ERROR).groupBy(ChronoUnit.SECONDS);
+        for (int i = 0; i < 5; i++) { // a dashboard refreshing, the log unchanged
+            long start = System.nanoTime();
+            cache.count(query);
+            System.out.println((System.nanoTime() - start) / 1_000 + " us");
+        }
+        System.out.print(cache.report());
+    }
+
+    @Test
+    public void testConsolidateBatched() throws IOException {
+        long start = System.currentTimeMillis();
+        //
+        Path in = LogGenerator.resourceOrCached("streams/test-1_000_000.log", 1_000_000);
+        Path out = Paths.get(HOME + "/Desktop/numbers_batch.txt");
+        try (Stream<MappedLines.Chunk> chunks = MappedLines.chunks(in); PrintWriter pw = new PrintWriter(Files.newBufferedWriter(out))) {
+            Consolidations.countPerEpochSecondBatched(chunks)
+                    .forEach((k, v) -> pw.println(k + " " + v));
         }
         //
         long stop = System.currentTimeMillis();
@@ -125,24 +185,13 @@ public class ParallelStreamTest {
     }
 
     @Test
-    public void testConsolidateWithoutOrdering() throws URISyntaxException, IOException {
+    public void testConsolidateWithoutOrdering() throws IOException {
         long start = System.currentTimeMillis();
         //
-        Path in = Paths.get(getClass().getClassLoader().getResource("streams/test-1_000_000.log").toURI());
+        Path in = LogGenerator.resourceOrCached("streams/test-1_000_000.log", 1_000_000);
         Path out = Paths.get(HOME + "/Desktop/numbers_par.txt");
-        try (Stream<String> lines = Files.lines(in); PrintWriter pw = new PrintWriter(Files.newBufferedWriter(out))) {
-            lines
-                    .parallel()
-                    .map(line -> Entry.of(line, Entry.Format.LOG_ENTRY))
-                    .filter(Optional::isPresent)
-                    .map(Optional::get)
-                    .filter(Entry::isError)
-                    // Group entries by timeStamp:
-                    // (1) 'groupingBy' generates a Map<Long, List<LogEnry>
-                    // (2) 'Collectors.counting() generates a Map<Long, Long> by counting the entries in 'List<LogEnry>'
-                    // (3) 'LinkedHashMap::new' keeps the order to avoid subsequent sorting
-                    .collect(Collectors.groupingBy(Entry::getTimeStamp, LinkedHashMap::new, Collectors.counting()))
-                    .forEach((k, v) -> pw.println(k + " " + v));
+        try (Stream<MappedLines.Chunk> chunks = MappedLines.chunks(in); CountsWriter writer = new CountsWriter(out)) {
+            Consolidations.writeCountPerEpochSecond(chunks.unordered(), writer);
         }
         //
         long stop = System.currentTimeMillis();
@@ -0,0 +1,9 @@
+package schrader.stream.test.parallel;
+
+// Entry of the formats that have no entry class of their own.
+class ParsedEntry extends Entry {
+
+    public boolean isError() {
+        return "error".equals(this.level);
+    }
+}
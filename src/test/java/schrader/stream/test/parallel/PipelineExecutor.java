@@ -0,0 +1,189 @@
+package schrader.stream.test.parallel;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+// Runs consolidation pipelines on a pool of their own instead of the common pool: parallel streams
+// evaluated by a task of a ForkJoinPool fork into that pool. Chunk pipelines are throttled by the
+// bytes of the chunks in flight, check for cancellation between chunks, and skip the pool for
+// inputs smaller than one chunk.
+final class PipelineExecutor implements AutoCloseable {
+
+    static final long DEFAULT_MAX_IN_FLIGHT_BYTES = 256L << 20;
+
+    private final ForkJoinPool pool;
+    private final boolean ownsPool;
+    private final Semaphore inFlight; // in KB, a permit per 1024 bytes of chunks being processed
+    private final int maxInFlightKb;
+
+    // a pool of the given parallelism, shut down on close()
+    PipelineExecutor(int parallelism) {
+        this(new ForkJoinPool(parallelism), true, DEFAULT_MAX_IN_FLIGHT_BYTES);
+    }
+
+    // the caller's pool, left running on close()
+    PipelineExecutor(ForkJoinPool pool, long maxInFlightBytes) {
+        this(pool, false, maxInFlightBytes);
+    }
+
+    private PipelineExecutor(ForkJoinPool pool, boolean ownsPool, long maxInFlightBytes) {
+        this.pool = pool;
+        this.ownsPool = ownsPool;
+        this.maxInFlightKb = (int) Math.min(Math.max(maxInFlightBytes >> 10, 1), Integer.MAX_VALUE);
+        this.inFlight = new Semaphore(maxInFlightKb);
+    }
+
+    int parallelism() {
+        return pool.getParallelism();
+    }
+
+    // any (parallel) stream pipeline, cancel() only stops it while it waits for a pool thread
+    <T> Job<T> submit(Callable<T> pipeline) {
+        return new Job<>(pool, pipeline);
+    }
+
+    // Maps the newline aligned chunks of the file and combines their results, empty supplies the
+    // result of a file without chunks. A chunk waits until its bytes fit into the in-flight limit,
+    // a chunk larger than the limit runs alone.
+    <R> Job<R> submit(Path log, Function<MappedLines.Chunk, R> perChunk, BinaryOperator<R> combine, Supplier<R> empty) {
+        AtomicBoolean cancelled = new AtomicBoolean();
+        return new Job<>(pool, cancelled, () -> {
+            try (FileChannel channel = FileChannel.open(log, StandardOpenOption.READ)) {
+                long size = channel.size();
+                long chunkSize = MappedLines.chunkSize(size, parallelism());
+                Stream<MappedLines.Chunk> chunks = MappedLines.chunks(channel, chunkSize);
+                return (size <= chunkSize ? chunks.sequential() : chunks)
+                        .map(chunk -> process(chunk, perChunk, cancelled))
+                        .reduce(combine)
+                        .orElseGet(empty);
+            }
+        });
+    }
+
+    // small inputs run right away on the caller's thread, without a hop into the pool
+    <R> R run(Path log, Function<MappedLines.Chunk, R> perChunk, BinaryOperator<R> combine, Supplier<R> empty,
+              Duration timeout)
+            throws IOException, InterruptedException, TimeoutException {
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.READ)) {
+            if (channel.size() < MappedLines.MIN_CHUNK_SIZE) {
+                return MappedLines.chunks(channel, MappedLines.MIN_CHUNK_SIZE).sequential()
+                        .map(perChunk)
+                        .reduce(combine)
+                        .orElseGet(empty);
+            }
+        }
+        return submit(log, perChunk, combine, empty).get(timeout);
+    }
+
+    SortedCounts countErrorsPerEpochSecond(Path log, Duration timeout)
+            throws IOException, InterruptedException, TimeoutException {
+        return run(log, Consolidations::countErrorsPerEpochSecond, LongCountMap::merge, LongCountMap::new, timeout)
+                .sorted();
+    }
+
+    private <R> R process(MappedLines.Chunk chunk, Function<MappedLines.Chunk, R> perChunk, AtomicBoolean cancelled) {
+        if (cancelled.get()) {
+            throw new CancellationException();
+        }
+        int permits = Math.min(Math.max(chunk.size() >> 10, 1), maxInFlightKb);
+        acquire(permits);
+        try {
+            if (cancelled.get()) {
+                throw new CancellationException();
+            }
+            return perChunk.apply(chunk);
+        } finally {
+            inFlight.release(permits);
+        }
+    }
+
+    // blocks a pool thread as a managed blocker, so the pool may compensate for it
+    private void acquire(int permits) {
+        try {
+            ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+
+                private boolean acquired;
+
+                @Override
+                public boolean block() throws InterruptedException {
+                    if (!acquired) {
+                        inFlight.acquire(permits);
+                        acquired = true;
+                    }
+                    return true;
+                }
+
+                @Override
+                public boolean isReleasable() {
+                    return acquired || (acquired = inFlight.tryAcquire(permits));
+                }
+            });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("interrupted");
+        }
+    }
+
+    @Override
+    public void close() {
+        if (ownsPool) {
+            pool.shutdownNow();
+        }
+    }
+
+    static final class Job<T> {
+
+        private final AtomicBoolean cancelled;
+        private final ForkJoinTask<T> task;
+
+        private Job(ForkJoinPool pool, Callable<T> pipeline) {
+            this(pool, new AtomicBoolean(), pipeline);
+        }
+
+        private Job(ForkJoinPool pool, AtomicBoolean cancelled, Callable<T> pipeline) {
+            this.cancelled = cancelled;
+            this.task = pool.submit(pipeline);
+        }
+
+        // chunks not yet started are skipped, the ones running complete
+        void cancel() {
+            cancelled.set(true);
+            task.cancel(false);
+        }
+
+        // cancels the job if it does not complete in time
+        T get(Duration timeout) throws IOException, InterruptedException, TimeoutException {
+            try {
+                return task.get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                cancel();
+                throw e;
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new IllegalStateException(cause);
+            }
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package schrader.stream.test.parallel;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PipelineExecutorTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void runsOnTheGivenPoolWithinTheMemoryLimit() throws Exception {
+        Path log = dir.resolve("test.log");
+        LogGenerator.write(log, 100_000, 15);
+        ForkJoinPool pool = new ForkJoinPool(3);
+        long limit = 2 * MappedLines.MIN_CHUNK_SIZE;
+        AtomicLong inFlight = new AtomicLong();
+        AtomicLong maxInFlight = new AtomicLong();
+        AtomicInteger foreign = new AtomicInteger();
+        try (PipelineExecutor executor = new PipelineExecutor(pool, limit)) {
+            SortedCounts counts = executor.run(log, chunk -> {
+                Thread thread = Thread.currentThread();
+                if (!(thread instanceof ForkJoinWorkerThread) || ((ForkJoinWorkerThread) thread).getPool() != pool) {
+                    foreign.incrementAndGet();
+                }
+                maxInFlight.accumulateAndGet(inFlight.addAndGet(chunk.size()), Math::max);
+                try {
+                    return Consolidations.countErrorsPerEpochSecond(chunk);
+                } finally {
+                    inFlight.addAndGet(-chunk.size());
+                }
+            }, LongCountMap::merge, LongCountMap::new, Duration.ofMinutes(1)).sorted();
+
+            try (Stream<String> lines = Files.lines(log)) {
+                assertThat(counts.stream().collect(Collectors.toList()))
+                        .isEqualTo(Consolidations.countPerEpochSecond(lines).stream().collect(Collectors.toList()));
+            }
+        }
+        assertThat(foreign).hasValue(0);
+        assertThat(maxInFlight.get()).isLessThanOrEqualTo(limit + (1 << 10)).isPositive();
+        assertThat(pool.isShutdown()).isFalse();
+        pool.shutdown();
+    }
+
+    @Test
+    void smallInputsStayOnTheCallingThread() throws Exception {
+        Path log = dir.resolve("small.log");
+        LogGenerator.write(log, 1_000, 15);
+        Thread caller = Thread.currentThread();
+        try (PipelineExecutor executor = new PipelineExecutor(2)) {
+            int chunks = executor.run(log, chunk -> {
+                assertThat(Thread.currentThread()).isSameAs(caller);
+                return 1;
+            }, Integer::sum, () -> 0, Duration.ofSeconds(10));
+            assertThat(chunks).isEqualTo(1);
+            assertThat(executor.countErrorsPerEpochSecond(log, Duration.ofSeconds(10)).total()).isPositive();
+        }
+    }
+
+    @Test
+    void timeoutCancelsRemainingChunks() throws IOException, InterruptedException {
+        Path log = dir.resolve("test.log");
+        LogGenerator.write(log, 200_000, 15);
+        AtomicInteger started = new AtomicInteger();
+        try (PipelineExecutor executor = new PipelineExecutor(1)) {
+            assertThatThrownBy(() -> executor.run(log, chunk -> {
+                started.incrementAndGet();
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return 1;
+            }, Integer::sum, () -> 0, Duration.ofMillis(100))).isInstanceOf(TimeoutException.class);
+            Thread.sleep(500);
+        }
+        assertThat(started.get()).isBetween(1, 3);
+        assertThat(Files.size(log) / MappedLines.MIN_CHUNK_SIZE).isGreaterThan(10);
+    }
+}
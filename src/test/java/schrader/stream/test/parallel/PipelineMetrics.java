@@ -0,0 +1,369 @@
+package schrader.stream.test.parallel;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collector;
+import java.util.stream.Stream;
+
+// Per stage counts and time histograms of a consolidation pipeline, the lines and chars read, the
+// lines no parser accepted and the bytes allocated by each thread taking part. The wrappers time
+// every element with System.nanoTime(); DISABLED hands the wrapped functions back unchanged.
+final class PipelineMetrics {
+
+    enum Stage {READ, PARSE, FILTER, GROUP, WRITE}
+
+    static final PipelineMetrics DISABLED = new PipelineMetrics(false);
+
+    private static final int BUCKETS = 64; // log2 of the nanoseconds
+    private static final int SAMPLE_EVERY = 1024; // records of a thread between its allocation samples
+
+    private final boolean enabled;
+    private final long started = System.nanoTime();
+    private final LongAdder[] counts = adders(Stage.values().length);
+    private final LongAdder[] nanos = adders(Stage.values().length);
+    private final LongAdder[] histograms = adders(Stage.values().length * BUCKETS);
+    private final LongAdder lines = new LongAdder();
+    private final LongAdder chars = new LongAdder();
+    private final LongAdder parseFailures = new LongAdder();
+    private final Map<Long, Allocation> allocations = new ConcurrentHashMap<>(); // by thread id
+    private final ThreadLocal<Allocation> allocation = new ThreadLocal<>();
+
+    private PipelineMetrics(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    static PipelineMetrics enabled() {
+        return new PipelineMetrics(true);
+    }
+
+    private static LongAdder[] adders(int n) {
+        LongAdder[] adders = new LongAdder[n];
+        for (int i = 0; i < n; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    // READ: counts the lines and their chars plus one for the line break. That is the bytes read of
+    // an ASCII log with '\n' line breaks only, the stream of decoded lines does not tell the bytes.
+    Stream<String> lines(Stream<String> lines) {
+        if (!enabled) {
+            return lines;
+        }
+        return lines.peek(line -> {
+            register();
+            this.lines.increment();
+            chars.add(line.length() + 1);
+        });
+    }
+
+    // PARSE: times the parser and counts the lines it rejects
+    EntryParser parser(EntryParser parser) {
+        if (!enabled) {
+            return parser;
+        }
+        return line -> {
+            long start = System.nanoTime();
+            Entry entry = parser.parse(line);
+            record(Stage.PARSE, System.nanoTime() - start);
+            if (entry == null) {
+                parseFailures.increment();
+            }
+            return entry;
+        };
+    }
+
+    <T, R> Function<T, R> time(Stage stage, Function<T, R> function) {
+        if (!enabled) {
+            return function;
+        }
+        return t -> {
+            long start = System.nanoTime();
+            R r = function.apply(t);
+            record(stage, System.nanoTime() - start);
+            return r;
+        };
+    }
+
+    <T> Predicate<T> timeFilter(Stage stage, Predicate<T> predicate) {
+        if (!enabled) {
+            return predicate;
+        }
+        return t -> {
+            long start = System.nanoTime();
+            boolean test = predicate.test(t);
+            record(stage, System.nanoTime() - start);
+            return test;
+        };
+    }
+
+    // times the accumulator, supplier, combiner and finisher run untimed
+    <T, A, R> Collector<T, A, R> time(Stage stage, Collector<T, A, R> collector) {
+        if (!enabled) {
+            return collector;
+        }
+        BiConsumer<A, T> accumulator = collector.accumulator();
+        return Collector.of(collector.supplier(),
+                (a, t) -> {
+                    long start = System.nanoTime();
+                    accumulator.accept(a, t);
+                    record(stage, System.nanoTime() - start);
+                },
+                collector.combiner(),
+                collector.finisher(),
+                collector.characteristics().toArray(new Collector.Characteristics[0]));
+    }
+
+    // for code blocks: long start = metrics.start(); ..; metrics.stop(Stage.WRITE, start);
+    long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    void stop(Stage stage, long start) {
+        if (enabled) {
+            record(stage, System.nanoTime() - start);
+        }
+    }
+
+    void record(Stage stage, long elapsedNanos) {
+        register();
+        int s = stage.ordinal();
+        counts[s].increment();
+        nanos[s].add(elapsedNanos);
+        histograms[s * BUCKETS + BUCKETS - 1 - Long.numberOfLeadingZeros(Math.max(elapsedNanos, 1))].increment();
+    }
+
+    // the thread's allocation is sampled now and then, a thread that has died keeps its last sample
+    private void register() {
+        Allocation a = allocation.get();
+        if (a == null) {
+            Thread thread = Thread.currentThread();
+            a = new Allocation(thread.getName(), allocatedBytes(thread.getId()));
+            allocations.put(thread.getId(), a);
+            allocation.set(a);
+        } else if (++a.records % SAMPLE_EVERY == 0) {
+            a.last = allocatedBytes(Thread.currentThread().getId());
+        }
+    }
+
+    long count(Stage stage) {
+        return counts[stage.ordinal()].sum();
+    }
+
+    long nanos(Stage stage) {
+        return nanos[stage.ordinal()].sum();
+    }
+
+    // upper bound of the histogram bucket holding the given fraction (0..1] of the stage's timings
+    long percentileNanos(Stage stage, double fraction) {
+        long threshold = (long) Math.ceil(count(stage) * fraction);
+        long seen = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            seen += histograms[stage.ordinal() * BUCKETS + b].sum();
+            if (seen >= threshold && seen > 0) {
+                return b == BUCKETS - 1 ? Long.MAX_VALUE : (2L << b) - 1;
+            }
+        }
+        return 0;
+    }
+
+    long lines() {
+        return lines.sum();
+    }
+
+    long chars() {
+        return chars.sum();
+    }
+
+    long parseFailures() {
+        return parseFailures.sum();
+    }
+
+    // bytes allocated by the pipeline threads since they first recorded, -1 if the JVM cannot tell
+    long allocatedBytes() {
+        return allocatedBytes(allocatedBytesPerThread());
+    }
+
+    private long allocatedBytes(Map<String, Long> perThread) {
+        if (perThread.isEmpty() && !allocations.isEmpty()) {
+            return -1;
+        }
+        return perThread.values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    // thread name -> bytes allocated since it first recorded, up to its last sample if it has died,
+    // the threads the JVM cannot tell about are left out
+    SortedMap<String, Long> allocatedBytesPerThread() {
+        SortedMap<String, Long> perThread = new TreeMap<>();
+        allocations.forEach((id, a) -> {
+            long now = allocatedBytes(id);
+            long bytes = (now >= 0 ? now : a.last) - a.baseline;
+            if (a.baseline >= 0) {
+                perThread.merge(a.thread, bytes, Long::sum);
+            }
+        });
+        return perThread;
+    }
+
+    int threads() {
+        return allocations.size();
+    }
+
+    private static long allocatedBytes(long threadId) {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(threadId);
+        }
+        return -1;
+    }
+
+    String report() {
+        if (!enabled) {
+            return "metrics disabled";
+        }
+        double seconds = (System.nanoTime() - started) / 1e9;
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("%,d lines (%,.0f/s), %,d chars (%,.1f M/s), %,d parse failures in %.3f s%n",
+                lines(), lines() / seconds, chars(), chars() / seconds / 1e6, parseFailures(), seconds));
+        SortedMap<String, Long> allocated = allocatedBytesPerThread();
+        report.append(String.format("%,d bytes allocated by %d threads%n", allocatedBytes(allocated), threads()));
+        allocated.forEach((thread, bytes) -> report.append(String.format("  %,14d %s%n", bytes, thread)));
+        report.append(String.format("%-7s %12s %12s %10s %10s %10s%n", "stage", "count", "total ms", "mean ns", "p50 ns", "p99 ns"));
+        for (Stage stage : Stage.values()) {
+            long count = count(stage);
+            if (count > 0) {
+                report.append(String.format("%-7s %,12d %,12.1f %,10d %,10d %,10d%n", stage, count, nanos(stage) / 1e6,
+                        nanos(stage) / count, percentileNanos(stage, 0.5), percentileNanos(stage, 0.99)));
+            }
+        }
+        return report.toString();
+    }
+
+    // one event per stage and one for the pipeline, for a recording that enables them
+    void commitEvents() {
+        if (!enabled) {
+            return;
+        }
+        for (Stage stage : Stage.values()) {
+            StageEvent event = new StageEvent();
+            if (event.isEnabled() && count(stage) > 0) {
+                event.stage = stage.name();
+                event.count = count(stage);
+                event.time = nanos(stage);
+                event.p50 = percentileNanos(stage, 0.5);
+                event.p99 = percentileNanos(stage, 0.99);
+                event.commit();
+            }
+        }
+        PipelineEvent event = new PipelineEvent();
+        if (event.isEnabled()) {
+            event.lines = lines();
+            event.chars = chars();
+            event.parseFailures = parseFailures();
+            event.allocated = allocatedBytes();
+            event.commit();
+        }
+        allocatedBytesPerThread().forEach((thread, bytes) -> {
+            ThreadAllocationEvent allocated = new ThreadAllocationEvent();
+            if (allocated.isEnabled()) {
+                allocated.thread = thread;
+                allocated.allocated = bytes;
+                allocated.commit();
+            }
+        });
+    }
+
+    // written by its thread only, read by the reports
+    private static final class Allocation {
+
+        final String thread;
+        final long baseline;
+        volatile long last;
+        int records;
+
+        Allocation(String thread, long baseline) {
+            this.thread = thread;
+            this.baseline = baseline;
+            this.last = baseline;
+        }
+    }
+
+    @Name("schrader.stream.PipelineStage")
+    @Label("Pipeline Stage")
+    @Category("Stream Demo")
+    @Description("Summary of one consolidation pipeline stage")
+    static final class StageEvent extends Event {
+
+        @Label("Stage")
+        String stage;
+
+        @Label("Count")
+        long count;
+
+        @Label("Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long time;
+
+        @Label("Median")
+        @Timespan(Timespan.NANOSECONDS)
+        long p50;
+
+        @Label("99th Percentile")
+        @Timespan(Timespan.NANOSECONDS)
+        long p99;
+    }
+
+    @Name("schrader.stream.Pipeline")
+    @Label("Pipeline")
+    @Category("Stream Demo")
+    @Description("Summary of a consolidation pipeline run")
+    static final class PipelineEvent extends Event {
+
+        @Label("Lines")
+        long lines;
+
+        @Label("Chars Read")
+        long chars;
+
+        @Label("Parse Failures")
+        long parseFailures;
+
+        @Label("Allocated")
+        @DataAmount
+        long allocated;
+    }
+
+    @Name("schrader.stream.PipelineThreadAllocation")
+    @Label("Pipeline Thread Allocation")
+    @Category("Stream Demo")
+    @Description("Bytes allocated by one thread of a consolidation pipeline run")
+    static final class ThreadAllocationEvent extends Event {
+
+        @Label("Thread")
+        String thread;
+
+        @Label("Allocated")
+        @DataAmount
+        long allocated;
+    }
+}
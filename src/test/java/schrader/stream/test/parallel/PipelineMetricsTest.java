@@ -0,0 +1,104 @@
+package schrader.stream.test.parallel;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PipelineMetricsTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void countsStagesAndParseFailures() throws IOException {
+        Path log = dir.resolve("test.log");
+        LogGenerator.write(log, 20_000, 14);
+        Files.write(log, List.of("no log entry", "[garbage"), StandardOpenOption.APPEND);
+        PipelineMetrics metrics = PipelineMetrics.enabled();
+
+        SortedCounts counts;
+        try (Stream<String> lines = Files.lines(log)) {
+            counts = Consolidations.countPerEpochSecond(lines.parallel(), metrics);
+        }
+
+        assertThat(metrics.lines()).isEqualTo(20_002);
+        assertThat(metrics.chars()).isEqualTo(Files.size(log)); // ASCII, '\n' line breaks
+        assertThat(metrics.parseFailures()).isEqualTo(2);
+        assertThat(metrics.count(PipelineMetrics.Stage.PARSE)).isEqualTo(20_002);
+        assertThat(metrics.count(PipelineMetrics.Stage.FILTER)).isEqualTo(20_000);
+        assertThat(metrics.count(PipelineMetrics.Stage.GROUP)).isEqualTo(counts.total());
+        assertThat(metrics.percentileNanos(PipelineMetrics.Stage.PARSE, 0.5))
+                .isLessThanOrEqualTo(metrics.percentileNanos(PipelineMetrics.Stage.PARSE, 0.99));
+        assertThat(metrics.allocatedBytes()).isPositive();
+        assertThat(metrics.report()).contains("PARSE", "FILTER", "GROUP", "2 parse failures");
+    }
+
+    @Test
+    void keepsTheAllocationOfThreadsThatHaveDied() throws InterruptedException {
+        PipelineMetrics metrics = PipelineMetrics.enabled();
+        Thread worker = new Thread(() -> {
+            for (int i = 0; i < 10_000; i++) {
+                metrics.record(PipelineMetrics.Stage.PARSE, Integer.toString(i).length());
+            }
+        }, "short-lived");
+        worker.start();
+        worker.join();
+        metrics.record(PipelineMetrics.Stage.WRITE, 1);
+
+        assertThat(metrics.threads()).isEqualTo(2);
+        assertThat(metrics.allocatedBytesPerThread()).containsKey("short-lived");
+        assertThat(metrics.allocatedBytesPerThread().get("short-lived")).isPositive();
+        assertThat(metrics.allocatedBytes()).isNotNegative();
+        assertThat(metrics.report()).contains("short-lived", Thread.currentThread().getName());
+    }
+
+    @Test
+    void disabledMetricsDoNotWrap() {
+        Function<String, Integer> length = String::length;
+        Predicate<String> empty = String::isEmpty;
+        EntryParser parser = EntryParsers.get(Entry.Format.LOG_ENTRY);
+        PipelineMetrics metrics = PipelineMetrics.DISABLED;
+
+        assertThat(metrics.time(PipelineMetrics.Stage.PARSE, length)).isSameAs(length);
+        assertThat(metrics.timeFilter(PipelineMetrics.Stage.FILTER, empty)).isSameAs(empty);
+        assertThat(metrics.parser(parser)).isSameAs(parser);
+        assertThat(metrics.lines(Stream.of("a")).count()).isEqualTo(1);
+        assertThat(metrics.lines()).isZero();
+    }
+
+    @Test
+    void commitsJfrEvents() throws IOException {
+        Path jfr = dir.resolve("metrics.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("schrader.stream.PipelineStage");
+            recording.enable("schrader.stream.Pipeline");
+            recording.start();
+            PipelineMetrics metrics = PipelineMetrics.enabled();
+            Stream.of("a", "bb", "ccc").map(metrics.time(PipelineMetrics.Stage.PARSE, String::length)).forEach(l -> {
+            });
+            metrics.commitEvents();
+            recording.stop();
+            recording.dump(jfr);
+        }
+        List<RecordedEvent> events = RecordingFile.readAllEvents(jfr);
+        List<String> names = events.stream().map(e -> e.getEventType().getName()).collect(Collectors.toList());
+        assertThat(names).containsExactlyInAnyOrder("schrader.stream.PipelineStage", "schrader.stream.Pipeline");
+        RecordedEvent stage = events.stream().filter(e -> e.hasField("stage")).findFirst().orElseThrow();
+        assertThat(stage.getString("stage")).isEqualTo("PARSE");
+        assertThat(stage.getLong("count")).isEqualTo(3);
+    }
+}
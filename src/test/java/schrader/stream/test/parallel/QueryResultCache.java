@@ -0,0 +1,342 @@
+package schrader.stream.test.parallel;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+// LogQuery results keyed by the log file (path and file key) and the query text, which holds the
+// levels, time range and grouping. A result covers the log up to its last complete line: when the
+// size and mtime are unchanged it is returned as is, when the log has grown behind that line only
+// the appended tail is counted and merged in. CRCs of the head and of the bytes before the covered
+// end tell an appended log from a rewritten one. The memory tier evicts the least recently used
+// results beyond maxBytes. The optional disk tier keeps the results written through in a file each,
+// is read on memory misses and deletes the least recently used files beyond maxDiskBytes, so the
+// results of rotated or deleted logs go in time. A file read is touched, its mtime orders the files
+// listed after a restart.
+final class QueryResultCache {
+
+    private static final int MAGIC = 0x51524343; // "QRCC"
+    private static final int VERSION = 1;
+    private static final int FINGERPRINT = 4096; // bytes checksummed at the head and before the end
+    private static final int ENTRY_BYTES = 256; // a result's estimated weight besides its counts
+
+    private final long maxBytes;
+    private final Path dir; // null without disk tier
+    private final long maxDiskBytes;
+    private final LinkedHashMap<String, Result> results = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+    private final LinkedHashMap<Path, Long> files = new LinkedHashMap<>(16, 0.75f, true); // -> size
+    private boolean filesListed; // guarded by files, like diskBytes
+    private long diskBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder tailHits = new LongAdder();
+    private final LongAdder diskHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder diskEvictions = new LongAdder();
+    private final LongAdder scannedBytes = new LongAdder();
+
+    QueryResultCache(long maxBytes) {
+        this(maxBytes, null, 0);
+    }
+
+    QueryResultCache(long maxBytes, Path dir, long maxDiskBytes) {
+        this.maxBytes = maxBytes;
+        this.dir = dir;
+        this.maxDiskBytes = maxDiskBytes;
+    }
+
+    SortedCounts count(LogQuery query) throws IOException {
+        Path log = query.log();
+        BasicFileAttributes attributes = Files.readAttributes(log, BasicFileAttributes.class);
+        String key = log.toRealPath() + "|" + attributes.fileKey() + "|" + query;
+        long size = attributes.size();
+        long mtime = attributes.lastModifiedTime().toMillis();
+
+        Result cached = get(key);
+        if (cached != null && cached.size == size && cached.mtime == mtime) {
+            hits.increment();
+            return cached.end < size ? cached.counts.merge(query.count(cached.end, size)) : cached.counts;
+        }
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.READ)) {
+            boolean appended = cached != null && cached.size < size
+                    && cached.head == crc(channel, 0, Math.min(FINGERPRINT, cached.end))
+                    && cached.tail == crc(channel, cached.end - FINGERPRINT, cached.end);
+            long start = appended ? cached.end : 0;
+            long end = lastLineEnd(channel, start, size);
+            SortedCounts counts = query.count(start, end);
+            scannedBytes.add(end - start);
+            if (appended) {
+                tailHits.increment();
+                counts = cached.counts.merge(counts);
+            } else {
+                misses.increment();
+            }
+            Result result = new Result(size, mtime, end, crc(channel, 0, Math.min(FINGERPRINT, end)),
+                    crc(channel, end - FINGERPRINT, end), counts);
+            put(key, result);
+            // a last line without newline is counted, but left out of the cached result
+            return end < size ? counts.merge(query.count(end, size)) : counts;
+        }
+    }
+
+    long hits() {
+        return hits.sum();
+    }
+
+    // results of grown logs, only their tail was counted
+    long tailHits() {
+        return tailHits.sum();
+    }
+
+    // results found on disk after a memory miss, counted in the other metrics as well
+    long diskHits() {
+        return diskHits.sum();
+    }
+
+    long misses() {
+        return misses.sum();
+    }
+
+    long evictions() {
+        return evictions.sum();
+    }
+
+    synchronized long bytes() {
+        return bytes;
+    }
+
+    // result files deleted from the disk tier
+    long diskEvictions() {
+        return diskEvictions.sum();
+    }
+
+    long diskBytes() {
+        synchronized (files) {
+            return diskBytes;
+        }
+    }
+
+    String report() {
+        long lookups = hits() + tailHits() + misses();
+        return String.format("%,d lookups: %,d hits, %,d tail hits, %,d misses (%.1f %% hit), %,d from disk%n"
+                        + "%,d evictions, %,d of %,d bytes held, %,d log bytes scanned%n"
+                        + "%,d disk evictions, %,d of %,d bytes on disk%n",
+                lookups, hits(), tailHits(), misses(), lookups == 0 ? 0 : 100.0 * (hits() + tailHits()) / lookups,
+                diskHits(), evictions(), bytes(), maxBytes, scannedBytes.sum(),
+                diskEvictions(), diskBytes(), maxDiskBytes);
+    }
+
+    private Result get(String key) throws IOException {
+        Result result;
+        synchronized (this) {
+            result = results.get(key);
+        }
+        if (result == null && dir != null) {
+            result = read(key);
+            if (result != null) {
+                diskHits.increment();
+                synchronized (this) {
+                    hold(key, result);
+                }
+            }
+        }
+        return result;
+    }
+
+    private void put(String key, Result result) throws IOException {
+        synchronized (this) {
+            hold(key, result);
+        }
+        if (dir != null) {
+            write(key, result);
+        }
+    }
+
+    private void hold(String key, Result result) {
+        Result old = results.put(key, result);
+        bytes += result.weight() - (old == null ? 0 : old.weight());
+        for (Iterator<Result> lru = results.values().iterator(); bytes > maxBytes && lru.hasNext(); ) {
+            Result eldest = lru.next();
+            if (eldest == result) {
+                break; // the newest result stays, even when it exceeds maxBytes alone
+            }
+            lru.remove();
+            bytes -= eldest.weight();
+            evictions.increment();
+        }
+    }
+
+    private Path file(String key) {
+        return dir.resolve(String.format("%08x-%08x.qrc", key.hashCode(), crc(key)));
+    }
+
+    private Result read(String key) throws IOException {
+        Path file = file(key);
+        synchronized (files) {
+            listFiles();
+            if (files.get(file) == null) { // a use, unless it is not there
+                return null;
+            }
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || !in.readUTF().equals(key)) {
+                return null;
+            }
+            Files.setLastModifiedTime(file, FileTime.from(Instant.now()));
+            long size = in.readLong();
+            long mtime = in.readLong();
+            long end = in.readLong();
+            long head = in.readLong();
+            long tail = in.readLong();
+            int n = in.readInt();
+            long[] keys = new long[n];
+            long[] counts = new long[n];
+            for (int i = 0; i < n; i++) {
+                keys[i] = in.readLong();
+                counts[i] = in.readLong();
+            }
+            return new Result(size, mtime, end, head, tail, new SortedCounts(keys, counts, n));
+        } catch (NoSuchFileException e) {
+            return null; // deleted meanwhile
+        }
+    }
+
+    private void write(String key, Result result) throws IOException {
+        Files.createDirectories(dir);
+        Path file = file(key);
+        Path tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(key);
+            out.writeLong(result.size);
+            out.writeLong(result.mtime);
+            out.writeLong(result.end);
+            out.writeLong(result.head);
+            out.writeLong(result.tail);
+            out.writeInt(result.counts.size());
+            for (int i = 0; i < result.counts.size(); i++) {
+                out.writeLong(result.counts.key(i));
+                out.writeLong(result.counts.count(i));
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        long size = Files.size(file);
+        synchronized (files) {
+            listFiles();
+            Long old = files.put(file, size);
+            diskBytes += size - (old == null ? 0 : old);
+            for (Iterator<Map.Entry<Path, Long>> lru = files.entrySet().iterator(); diskBytes > maxDiskBytes; ) {
+                Map.Entry<Path, Long> eldest = lru.next();
+                if (eldest.getKey().equals(file)) {
+                    break; // the newest file stays, like the newest result in memory
+                }
+                lru.remove();
+                diskBytes -= eldest.getValue();
+                Files.deleteIfExists(eldest.getKey());
+                diskEvictions.increment();
+            }
+        }
+    }
+
+    // the result files already on disk, the least recently used first, on the first disk access
+    private void listFiles() throws IOException {
+        if (filesListed || Files.notExists(dir)) {
+            return;
+        }
+        List<Path> listed;
+        try (Stream<Path> paths = Files.list(dir)) {
+            listed = paths.filter(path -> path.getFileName().toString().endsWith(".qrc")).collect(Collectors.toList());
+        }
+        Map<Path, BasicFileAttributes> attributes = new HashMap<>();
+        for (Path path : listed) {
+            attributes.put(path, Files.readAttributes(path, BasicFileAttributes.class));
+        }
+        listed.sort(Comparator.comparing(path -> attributes.get(path).lastModifiedTime()));
+        for (Path path : listed) {
+            files.put(path, attributes.get(path).size());
+            diskBytes += attributes.get(path).size();
+        }
+        filesListed = true;
+    }
+
+    // the position after the last newline in [start, size), start if there is none
+    private static long lastLineEnd(FileChannel channel, long start, long size) throws IOException {
+        ByteBuffer probe = ByteBuffer.allocate(FINGERPRINT);
+        for (long end = size; end > start; ) {
+            long from = Math.max(start, end - probe.capacity());
+            probe.clear().limit((int) (end - from));
+            MappedLines.readFully(channel, probe, from);
+            for (int i = probe.position() - 1; i >= 0; i--) {
+                if (probe.get(i) == '\n') {
+                    return from + i + 1;
+                }
+            }
+            end = from;
+        }
+        return start;
+    }
+
+    // CRC32 of the bytes [max(from, 0), to) of the log
+    private static long crc(FileChannel channel, long from, long to) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate((int) (to - Math.max(from, 0)));
+        MappedLines.readFully(channel, bytes, Math.max(from, 0));
+        CRC32 crc = new CRC32();
+        crc.update(bytes.flip());
+        return crc.getValue();
+    }
+
+    private static long crc(String key) {
+        CRC32 crc = new CRC32();
+        crc.update(key.getBytes(StandardCharsets.UTF_8));
+        return crc.getValue();
+    }
+
+    private static final class Result {
+
+        final long size; // of the log when counted
+        final long mtime;
+        final long end; // of the last complete line, the counts cover [0, end)
+        final long head; // crc of the first bytes
+        final long tail; // crc of the bytes before end
+        final SortedCounts counts;
+
+        Result(long size, long mtime, long end, long head, long tail, SortedCounts counts) {
+            this.size = size;
+            this.mtime = mtime;
+            this.end = end;
+            this.head = head;
+            this.tail = tail;
+            this.counts = counts;
+        }
+
+        long weight() {
+            return ENTRY_BYTES + 16L * counts.size();
+        }
+    }
+}
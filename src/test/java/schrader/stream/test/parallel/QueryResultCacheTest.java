@@ -0,0 +1,103 @@
+package schrader.stream.test.parallel;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class QueryResultCacheTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void countsOnlyTheAppendedTail() throws IOException {
+        Path log = dir.resolve("app.log");
+        Path more = dir.resolve("more.log");
+        LogGenerator.write(log, 50_000, 23);
+        new LogGenerator().lines(10_000).seed(24).start(Instant.parse("2019-02-12T10:00:00Z"), ZoneOffset.UTC)
+                .write(more);
+        QueryResultCache cache = new QueryResultCache(1 << 20);
+        LogQuery query = LogQuery.from(log).level(Levels.ERROR).groupBy(ChronoUnit.SECONDS);
+
+        SortedCounts first = cache.count(query);
+        assertThat(first.toMap()).isEqualTo(query.count().toMap());
+        assertThat(cache.count(query)).isSameAs(first);
+        assertThat(cache.hits()).isEqualTo(1);
+        assertThat(cache.misses()).isEqualTo(1);
+
+        long size = Files.size(log);
+        List<String> appended = Files.readAllLines(more);
+        Files.write(log, appended.subList(0, 5_000), StandardOpenOption.APPEND);
+        // half a line, it is counted once it is complete
+        Files.write(log, appended.get(5_000).substring(0, 30).getBytes(), StandardOpenOption.APPEND);
+        SortedCounts grown = cache.count(query);
+        assertThat(grown.toMap()).isEqualTo(query.count().toMap());
+        assertThat(cache.tailHits()).isEqualTo(1);
+        Files.write(log, (appended.get(5_000).substring(30) + "\n").getBytes(), StandardOpenOption.APPEND);
+        Files.write(log, appended.subList(5_001, 10_000), StandardOpenOption.APPEND);
+        assertThat(cache.count(query).toMap()).isEqualTo(query.count().toMap());
+        assertThat(cache.tailHits()).isEqualTo(2);
+        assertThat(cache.misses()).isEqualTo(1);
+
+        // rewritten in place: a miss
+        Files.write(log, appended);
+        assertThat(Files.size(log)).isLessThan(size);
+        assertThat(cache.count(query).toMap()).isEqualTo(query.count().toMap());
+        assertThat(cache.misses()).isEqualTo(2);
+        assertThat(cache.report()).contains("1 hits, 2 tail hits, 2 misses");
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedAndReadsTheDiskTier() throws IOException {
+        Path log = dir.resolve("app.log");
+        LogGenerator.write(log, 20_000, 23);
+        Path disk = dir.resolve("cache");
+        LogQuery errors = LogQuery.from(log).level(Levels.ERROR);
+        LogQuery warnings = LogQuery.from(log).level(Levels.WARN);
+        LogQuery minutes = LogQuery.from(log).level(Levels.WARN).groupBy(ChronoUnit.MINUTES);
+        QueryResultCache cache = new QueryResultCache(1_200, disk, 1 << 20); // about one per second result
+
+        Map<Long, Long> expected = cache.count(errors).toMap();
+        cache.count(minutes); // evicts errors
+        cache.count(warnings); // evicts minutes
+        assertThat(cache.evictions()).isEqualTo(2);
+        assertThat(cache.bytes()).isLessThanOrEqualTo(1_200);
+        assertThat(cache.count(errors).toMap()).isEqualTo(expected);
+        assertThat(cache.diskHits()).isEqualTo(1);
+        assertThat(cache.hits()).isEqualTo(1);
+
+        // room for the three results on disk, the least recently used are deleted beyond
+        QueryResultCache restarted = new QueryResultCache(1 << 20, disk, cache.diskBytes());
+        assertThat(restarted.count(minutes).toMap()).isEqualTo(minutes.count().toMap());
+        assertThat(restarted.diskHits()).isEqualTo(1);
+        assertThat(restarted.misses()).isZero();
+        restarted.count(LogQuery.from(log).level(Levels.INFO).groupBy(ChronoUnit.MINUTES)); // deletes warnings
+        assertThat(restarted.diskEvictions()).isEqualTo(1);
+        assertThat(restarted.diskBytes()).isLessThanOrEqualTo(cache.diskBytes());
+        try (Stream<Path> files = Files.list(disk)) {
+            assertThat(files.count()).isEqualTo(3);
+        }
+        restarted.count(errors);
+        assertThat(restarted.diskHits()).isEqualTo(2);
+        restarted.count(warnings);
+        assertThat(restarted.diskHits()).isEqualTo(2);
+        assertThat(restarted.misses()).isEqualTo(2);
+
+        Files.setLastModifiedTime(log, FileTime.from(Instant.now().plusSeconds(60)));
+        restarted.count(minutes); // same size, other mtime
+        assertThat(restarted.misses()).isEqualTo(3);
+    }
+}
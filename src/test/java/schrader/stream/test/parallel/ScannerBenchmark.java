@@ -0,0 +1,86 @@
+package schrader.stream.test.parallel;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+// Run with: gradle jmh -Pjmh="ScannerBenchmark"
+// One operation scans the whole generated file on one thread: the newlines only, the lines parsed
+// into EntryBatch columns by either scanner, and the lines matched by the LogEntry regex.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class ScannerBenchmark {
+
+    @Param({"1000000"})
+    public int lines;
+
+    @Param({"SCALAR", "SWAR"})
+    public String scannerName;
+
+    private ByteScanner scanner;
+    private ByteBuffer bytes;
+    private byte[] array;
+
+    @Setup
+    public void setUp() throws IOException {
+        scanner = ByteScanner.valueOf(scannerName);
+        Path in = LogGenerator.cached(lines);
+        try (FileChannel channel = FileChannel.open(in, StandardOpenOption.READ)) {
+            bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        array = new byte[bytes.limit()];
+        bytes.duplicate().get(array);
+    }
+
+    @Benchmark
+    public int newlines() {
+        int count = 0;
+        for (int i = scanner.indexOf(array, (byte) '\n', 0, array.length); i >= 0;
+             i = scanner.indexOf(array, (byte) '\n', i + 1, array.length)) {
+            count++;
+        }
+        return count;
+    }
+
+    @Benchmark
+    public long entryBatch() {
+        EntryBatch batch = new EntryBatch(EntryBatch.DEFAULT_CAPACITY, scanner);
+        long errors = 0;
+        for (int p = 0; p < bytes.limit(); ) {
+            p = batch.fill(bytes, p);
+            errors += batch.count(Levels.ERROR);
+        }
+        return errors;
+    }
+
+    // independent of the scanner, the baseline of the LOG_ENTRY_REGEX parser
+    @Benchmark
+    public long regex() throws IOException {
+        try (FileChannel channel = FileChannel.open(LogGenerator.cached(lines), StandardOpenOption.READ)) {
+            return MappedLines.chunks(channel, MappedLines.MAX_CHUNK_SIZE).sequential()
+                    .flatMap(MappedLines.Chunk::lines)
+                    .map(LogEntry::match)
+                    .filter(e -> e != null && e.isError())
+                    .count();
+        }
+    }
+}
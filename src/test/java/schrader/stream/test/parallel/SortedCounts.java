@@ -0,0 +1,81 @@
+package schrader.stream.test.parallel;
+
+import java.util.AbstractMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+// (key, count) pairs in ascending key order.
+final class SortedCounts {
+
+    private final long[] keys;
+    private final long[] counts;
+    private final int size;
+
+    SortedCounts(long[] keys, long[] counts, int size) {
+        this.keys = keys;
+        this.counts = counts;
+        this.size = size;
+    }
+
+    int size() {
+        return size;
+    }
+
+    long key(int i) {
+        return keys[i];
+    }
+
+    long count(int i) {
+        return counts[i];
+    }
+
+    long total() {
+        long total = 0;
+        for (int i = 0; i < size; i++) {
+            total += counts[i];
+        }
+        return total;
+    }
+
+    void forEach(KeyCountConsumer consumer) {
+        for (int i = 0; i < size; i++) {
+            consumer.accept(keys[i], counts[i]);
+        }
+    }
+
+    // the counts of both, added up where the keys are equal
+    SortedCounts merge(SortedCounts other) {
+        long[] mergedKeys = new long[size + other.size];
+        long[] mergedCounts = new long[size + other.size];
+        int i = 0;
+        int j = 0;
+        int n = 0;
+        while (i < size || j < other.size) {
+            if (j == other.size || (i < size && keys[i] < other.keys[j])) {
+                mergedKeys[n] = keys[i];
+                mergedCounts[n++] = counts[i++];
+            } else if (i == size || other.keys[j] < keys[i]) {
+                mergedKeys[n] = other.keys[j];
+                mergedCounts[n++] = other.counts[j++];
+            } else {
+                mergedKeys[n] = keys[i];
+                mergedCounts[n++] = counts[i++] + other.counts[j++];
+            }
+        }
+        return new SortedCounts(mergedKeys, mergedCounts, n);
+    }
+
+    // key -> count, e.g. to compare with an expected map
+    SortedMap<Long, Long> toMap() {
+        SortedMap<Long, Long> map = new TreeMap<>();
+        forEach(map::put);
+        return map;
+    }
+
+    Stream<Map.Entry<Long, Long>> stream() {
+        return IntStream.range(0, size).mapToObj(i -> new AbstractMap.SimpleImmutableEntry<>(keys[i], counts[i]));
+    }
+}
@@ -0,0 +1,238 @@
+package schrader.stream.test.parallel;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Space-Saving heavy hitters in a fixed number of counters (Metwally et al.). A key without a counter
+// takes over the smallest one, its count then overestimates by at most that minimum, the error.
+// Every key occurring more often than total / capacity is guaranteed to hold a counter. Keys are
+// looked up by their chars, a String is made of a CharSequence key only when it takes a counter.
+final class SpaceSaving {
+
+    private static final int PHI = 0x9E3779B9;
+
+    private final int capacity;
+    private final String[] keys;
+    private final long[] counts;
+    private final long[] errors;
+    private final int[] heap; // min-heap of counter indexes by count
+    private final int[] positions; // of a counter in the heap
+    private final int[] slots; // counter + 1 by the hash of its key, linear probing, 0 marks a free slot
+    private final int shift;
+    private int size;
+    private long total;
+
+    SpaceSaving(int capacity) {
+        this.capacity = capacity;
+        this.keys = new String[capacity];
+        this.counts = new long[capacity];
+        this.errors = new long[capacity];
+        this.heap = new int[capacity];
+        this.positions = new int[capacity];
+        int tableSize = Integer.highestOneBit(Math.max(capacity, 2) * 2 - 1) << 1; // at most half full
+        this.slots = new int[tableSize];
+        this.shift = 32 - Integer.numberOfTrailingZeros(tableSize);
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    void add(CharSequence key) {
+        add(key, 1, 0);
+    }
+
+    private void add(CharSequence key, long count, long error) {
+        total += count;
+        int i = indexOf(key);
+        if (i >= 0) {
+            counts[i] += count;
+            errors[i] += error;
+            siftDown(positions[i]);
+        } else if (size < capacity) {
+            int c = size++;
+            keys[c] = key.toString();
+            counts[c] = count;
+            errors[c] = error;
+            insert(c);
+            heap[c] = c;
+            positions[c] = c;
+            siftUp(c);
+        } else {
+            int c = heap[0];
+            remove(c);
+            keys[c] = key.toString();
+            errors[c] = counts[c] + error;
+            counts[c] += count;
+            insert(c);
+            siftDown(0);
+        }
+    }
+
+    // A summary of the n largest counters of this one, for a window that is closed.
+    // Its minimum count stands in for the keys dropped when it is merged.
+    SpaceSaving shrink(int n) {
+        if (n >= capacity) {
+            return this;
+        }
+        SpaceSaving shrunk = new SpaceSaving(n);
+        Integer[] order = new Integer[size];
+        for (int c = 0; c < size; c++) {
+            order[c] = c;
+        }
+        // in the order of top()
+        Arrays.sort(order, Comparator.comparingLong((Integer c) -> counts[c]).reversed().thenComparing(c -> keys[c]));
+        for (int k = 0; k < Math.min(n, size); k++) {
+            int c = order[k];
+            shrunk.add(keys[c], counts[c], errors[c]);
+        }
+        shrunk.total = total;
+        return shrunk;
+    }
+
+    // Combines two summaries (Agarwal et al., mergeable summaries): a key missing in one summary may
+    // have occurred up to its minimum count there. Returns this summary, at its own capacity.
+    SpaceSaving merge(SpaceSaving other) {
+        long min = size < capacity ? 0 : counts[heap[0]];
+        long otherMin = other.size < other.capacity ? 0 : other.counts[other.heap[0]];
+        Map<String, long[]> union = new HashMap<>((size + other.size) * 2);
+        for (int c = 0; c < size; c++) {
+            union.put(keys[c], new long[]{counts[c] + otherMin, errors[c] + otherMin});
+        }
+        for (int c = 0; c < other.size; c++) {
+            long[] e = union.get(other.keys[c]);
+            if (e == null) {
+                union.put(other.keys[c], new long[]{other.counts[c] + min, other.errors[c] + min});
+            } else {
+                e[0] += other.counts[c] - otherMin;
+                e[1] += other.errors[c] - otherMin;
+            }
+        }
+        List<Map.Entry<String, long[]>> largest = new ArrayList<>(union.entrySet());
+        largest.sort(Comparator.comparingLong((Map.Entry<String, long[]> e) -> e.getValue()[0]).reversed());
+        long mergedTotal = total + other.total;
+        clear();
+        for (Map.Entry<String, long[]> e : largest.subList(0, Math.min(capacity, largest.size()))) {
+            add(e.getKey(), e.getValue()[0], e.getValue()[1]);
+        }
+        total = mergedTotal;
+        return this;
+    }
+
+    private void clear() {
+        Arrays.fill(slots, 0);
+        size = 0;
+        total = 0;
+    }
+
+    long total() {
+        return total;
+    }
+
+    // estimated count, an overestimate by at most error(key); 0 for keys without a counter
+    long count(String key) {
+        int i = indexOf(key);
+        return i < 0 ? 0 : counts[i];
+    }
+
+    long error(String key) {
+        int i = indexOf(key);
+        return i < 0 ? 0 : errors[i];
+    }
+
+    // the n keys with the highest estimates, descending
+    List<Map.Entry<String, Long>> top(int n) {
+        List<Map.Entry<String, Long>> top = new ArrayList<>(size);
+        for (int c = 0; c < size; c++) {
+            top.add(new AbstractMap.SimpleImmutableEntry<>(keys[c], counts[c]));
+        }
+        top.sort(Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()));
+        return top.subList(0, Math.min(n, top.size()));
+    }
+
+    // the counter of the key, -1 if it has none
+    private int indexOf(CharSequence key) {
+        int mask = slots.length - 1;
+        for (int i = slot(key); slots[i] != 0; i = (i + 1) & mask) {
+            int c = slots[i] - 1;
+            if (keys[c].contentEquals(key)) {
+                return c;
+            }
+        }
+        return -1;
+    }
+
+    private void insert(int c) {
+        int mask = slots.length - 1;
+        int i = slot(keys[c]);
+        while (slots[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        slots[i] = c + 1;
+    }
+
+    // frees the slot of the counter and moves later slots of its probe run back into the gap
+    private void remove(int c) {
+        int mask = slots.length - 1;
+        int gap = slot(keys[c]);
+        while (slots[gap] != c + 1) {
+            gap = (gap + 1) & mask;
+        }
+        for (int i = (gap + 1) & mask; slots[i] != 0; i = (i + 1) & mask) {
+            int home = slot(keys[slots[i] - 1]);
+            // the entry may move into the gap unless its home lies cyclically in (gap, i]
+            if (((i - home) & mask) >= ((i - gap) & mask)) {
+                slots[gap] = slots[i];
+                gap = i;
+            }
+        }
+        slots[gap] = 0;
+    }
+
+    // the hash of String.hashCode(), so a String and a StringBuilder of the same chars meet
+    private int slot(CharSequence key) {
+        int h = 0;
+        for (int i = 0; i < key.length(); i++) {
+            h = 31 * h + key.charAt(i);
+        }
+        return (h * PHI) >>> shift;
+    }
+
+    private void siftUp(int p) {
+        int c = heap[p];
+        while (p > 0) {
+            int parent = (p - 1) >>> 1;
+            if (counts[heap[parent]] <= counts[c]) {
+                break;
+            }
+            place(heap[parent], p);
+            p = parent;
+        }
+        place(c, p);
+    }
+
+    private void siftDown(int p) {
+        int c = heap[p];
+        for (int child = 2 * p + 1; child < size; child = 2 * p + 1) {
+            if (child + 1 < size && counts[heap[child + 1]] < counts[heap[child]]) {
+                child++;
+            }
+            if (counts[heap[child]] >= counts[c]) {
+                break;
+            }
+            place(heap[child], p);
+            p = child;
+        }
+        place(c, p);
+    }
+
+    private void place(int c, int p) {
+        heap[p] = c;
+        positions[c] = p;
+    }
+}
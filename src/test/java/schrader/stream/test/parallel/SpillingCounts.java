@@ -0,0 +1,187 @@
+package schrader.stream.test.parallel;
+
+import schrader.stream.test.SpilledRuns;
+import schrader.stream.test.Varint;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collector;
+import java.util.stream.Stream;
+
+// long -> count aggregation within a memory budget: the keys are counted in a LongCountMap until
+// the budget is used up, then the table is spilled to a run sorted by key and dropped, see
+// SpilledRuns. A run holds the first key and the key deltas as varints and the counts as zigzag
+// varints.
+final class SpillingCounts implements AutoCloseable {
+
+    private static final RunFormat FORMAT = new RunFormat();
+
+    private final SpilledRuns.Budget budget;
+    private final SpilledRuns<Run> runs;
+    private LongCountMap table = new LongCountMap();
+
+    SpillingCounts(long budget) {
+        this(budget, Paths.get(System.getProperty("java.io.tmpdir")));
+    }
+
+    SpillingCounts(long budget, Path dir) {
+        this(budget(budget, 1), dir);
+    }
+
+    private SpillingCounts(SpilledRuns.Budget budget, Path dir) {
+        this.budget = budget;
+        this.runs = new SpilledRuns<>(budget, dir, "counts-", FORMAT, (a, b) -> Long.compare(a.key, b.key));
+    }
+
+    static <T> SpillingCounts count(Stream<T> items, ToLongFunction<? super T> key, long budget) {
+        return count(items, key, budget, Paths.get(System.getProperty("java.io.tmpdir")));
+    }
+
+    // Counts into containers sharing the budget, one per task of a parallel stream, the combiner
+    // hands the runs of one to the other. The result is to be written and closed by the caller,
+    // the runs spilled before a failure are deleted.
+    static <T> SpillingCounts count(Stream<T> items, ToLongFunction<? super T> key, long budget, Path dir) {
+        SpilledRuns.Budget shared = budget(budget, Runtime.getRuntime().availableProcessors());
+        try {
+            return items.collect(Collector.of(() -> new SpillingCounts(shared, dir),
+                    (counts, t) -> counts.add(key.applyAsLong(t), 1),
+                    SpillingCounts::merge,
+                    Collector.Characteristics.UNORDERED, Collector.Characteristics.IDENTITY_FINISH));
+        } catch (RuntimeException | Error e) {
+            shared.deleteRuns(e);
+            throw e;
+        }
+    }
+
+    // in keys: a table of 16 byte slots spills before it grows beyond 2/3 of the budget, the sorted
+    // copy of a spill takes 8 bytes per slot
+    private static SpilledRuns.Budget budget(long bytes, int threads) {
+        long slots = Long.highestOneBit(Math.max(bytes / 24, 16));
+        long keys = Math.min(slots / 2, 1 << 28);
+        return new SpilledRuns.Budget(bytes, keys, Math.max(keys / (8L * threads), 16), threads);
+    }
+
+    void add(long key, long delta) {
+        table.add(key, delta);
+        // the reservation grows by blocks
+        if (table.size() > runs.reserved() && !runs.reserve(table.size(), budget.block())) {
+            spill();
+        }
+    }
+
+    SpillingCounts merge(SpillingCounts other) {
+        runs.addAll(other.runs);
+        other.runs.release();
+        other.table.forEach(this::add);
+        other.table = new LongCountMap(); // a cleared table would keep its arrays beyond the reservation
+        return this;
+    }
+
+    int runs() {
+        return runs.runs();
+    }
+
+    long spilledBytes() {
+        return runs.spilledBytes();
+    }
+
+    // the most spilled runs read at once by forEach()
+    int maxOpenRuns() {
+        return runs.maxOpenRuns();
+    }
+
+    void writeTo(CountsWriter out) throws IOException {
+        runs.forEach(new Run(table.sorted()), (run, count) -> out.write(run.key, count));
+    }
+
+    // the (key, count) sums in ascending key order
+    void forEach(KeyCountConsumer consumer) throws IOException {
+        runs.forEach(new Run(table.sorted()), (run, count) -> consumer.accept(run.key, count));
+    }
+
+    // deletes the runs
+    @Override
+    public void close() throws IOException {
+        runs.close();
+        table = new LongCountMap();
+    }
+
+    private void spill() {
+        try {
+            runs.spill(new Run(table.sorted()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        table = new LongCountMap();
+        runs.release();
+    }
+
+    private static final class RunFormat implements SpilledRuns.Codec<Run> {
+
+        @Override
+        public SpilledRuns.Encoder<Run> encoder() {
+            return new KeyEncoder();
+        }
+
+        @Override
+        public Run reader(DataInputStream in, long records) {
+            return new Run(in, records);
+        }
+    }
+
+    // the first key, then the deltas to the key before
+    private static final class KeyEncoder implements SpilledRuns.Encoder<Run> {
+
+        private boolean first = true;
+        private long previous;
+
+        @Override
+        public void write(DataOutputStream out, Run run, long count) throws IOException {
+            if (first) {
+                Varint.writeSigned(out, run.key);
+                first = false;
+            } else {
+                Varint.write(out, run.key - previous); // positive, or wrapped around
+            }
+            previous = run.key;
+            Varint.writeSigned(out, count);
+        }
+    }
+
+    // a spilled run or the sorted table, positioned at one (key, count) by next()
+    private static final class Run extends SpilledRuns.Cursor {
+
+        private final DataInputStream in;
+        private final SortedCounts counts;
+        private int index;
+        long key;
+
+        Run(DataInputStream in, long records) {
+            super(records);
+            this.in = in;
+            this.counts = null;
+        }
+
+        Run(SortedCounts counts) {
+            super(counts.size());
+            this.in = null;
+            this.counts = counts;
+        }
+
+        @Override
+        protected void read() throws IOException {
+            if (counts != null) {
+                key = counts.key(index);
+                count = counts.count(index++);
+            } else {
+                key = index++ == 0 ? Varint.readSigned(in) : key + Varint.read(in);
+                count = Varint.readSigned(in);
+            }
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package schrader.stream.test.parallel;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SpillingCountsTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void mergesSpilledRunsInKeyOrder() throws IOException {
+        SplittableRandom random = new SplittableRandom(24);
+        Map<Long, Long> expected = new TreeMap<>();
+        List<Long> keys = new ArrayList<>();
+        try (SpillingCounts counts = new SpillingCounts(64 << 10, dir)) {
+            for (int i = 0; i < 200_000; i++) {
+                long key = i % 1000 == 0 ? (i % 2000 == 0 ? Long.MIN_VALUE : Long.MAX_VALUE)
+                        : random.nextLong(-1_000_000, 1_000_000);
+                long delta = random.nextInt(-2, 5);
+                counts.add(key, delta);
+                expected.merge(key, delta, Long::sum);
+            }
+            assertThat(counts.runs()).isGreaterThan(10);
+            Map<Long, Long> merged = new TreeMap<>();
+            counts.forEach((key, count) -> {
+                keys.add(key);
+                merged.put(key, count);
+            });
+            assertThat(keys).isSorted().doesNotHaveDuplicates();
+            assertThat(merged).isEqualTo(expected);
+        }
+        try (Stream<Path> left = Files.list(dir)) {
+            assertThat(left).isEmpty();
+        }
+    }
+
+    @Test
+    void mergesManyRunsWithBoundedFanIn() throws IOException {
+        SplittableRandom random = new SplittableRandom(24);
+        Map<Long, Long> expected = new TreeMap<>();
+        try (SpillingCounts counts = new SpillingCounts(256 << 10, dir)) { // 4 runs of 64 KB buffers
+            for (int i = 0; i < 400_000; i++) {
+                long key = random.nextLong(-100_000_000, 100_000_000);
+                counts.add(key, 1);
+                expected.merge(key, 1L, Long::sum);
+            }
+            assertThat(counts.runs()).isGreaterThan(40);
+            Map<Long, Long> merged = new TreeMap<>();
+            counts.forEach(merged::put);
+            assertThat(counts.maxOpenRuns()).isLessThanOrEqualTo(4);
+            assertThat(counts.runs()).isLessThanOrEqualTo(4);
+            assertThat(merged).isEqualTo(expected);
+        }
+        try (Stream<Path> left = Files.list(dir)) {
+            assertThat(left).isEmpty();
+        }
+    }
+
+    @Test
+    void deletesTheRunsOfAFailedCollect() throws IOException {
+        Stream<Long> keys = LongStream.range(0, 100_000)
+                .mapToObj(i -> {
+                    if (i == 99_999) {
+                        throw new IllegalStateException("read failed");
+                    }
+                    return i;
+                });
+        assertThatThrownBy(() -> SpillingCounts.count(keys, Long::longValue, 64 << 10, dir))
+                .isInstanceOf(IllegalStateException.class);
+        try (Stream<Path> left = Files.list(dir)) {
+            assertThat(left).isEmpty();
+        }
+    }
+
+    @Test
+    void writesErrorsPerMilliWithinTheBudget() throws IOException {
+        Path log = dir.resolve("app.log");
+        Path out = dir.resolve("counts.txt");
+        LogGenerator.write(log, 200_000, 24);
+        try (Stream<String> lines = Files.lines(log); CountsWriter writer = new CountsWriter(out)) {
+            Consolidations.writeCountPerEpochMilli(lines.parallel(), 16 << 10, writer);
+        }
+        Map<Long, Long> expected;
+        try (Stream<String> lines = Files.lines(log)) {
+            expected = Consolidations.errors(lines)
+                    .collect(Collectors.groupingBy(e -> e.getTimeStamp().toEpochMilli(), TreeMap::new, Collectors.counting()));
+        }
+        assertThat(Files.readAllLines(out)).containsExactlyElementsOf(expected.entrySet().stream()
+                .map(e -> e.getKey() + " " + e.getValue()).collect(Collectors.toList()));
+    }
+}
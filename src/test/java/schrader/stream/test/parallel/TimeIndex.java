@@ -0,0 +1,200 @@
+package schrader.stream.test.parallel;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// Sparse index "<log>.idx" of a time ordered log: the timestamp and byte offset of every n-th
+// line. Time bounded queries binary-search it and parse only the slice of the log that can hold
+// entries of the range. The index is rebuilt when size or mtime of the log change, or when the
+// sidecar is truncated or corrupt.
+final class TimeIndex {
+
+    static final int DEFAULT_INTERVAL = 1024;
+
+    private static final int MAGIC = 0x54494458; // "TIDX"
+    private static final int VERSION = 2; // 2: timestamp offsets applied
+    private static final int HEADER_BYTES = 32; // magic, version, size, mtime, interval, points
+
+    private final Path log;
+    private final long[] epochNanos;
+    private final long[] offsets;
+
+    private TimeIndex(Path log, long[] epochNanos, long[] offsets) {
+        this.log = log;
+        this.epochNanos = epochNanos;
+        this.offsets = offsets;
+    }
+
+    static Path sidecar(Path log) {
+        return log.resolveSibling(log.getFileName() + ".idx");
+    }
+
+    static TimeIndex open(Path log) throws IOException {
+        return open(log, DEFAULT_INTERVAL);
+    }
+
+    // loads the index of the log, builds it on the first call, when the log has changed or when
+    // the sidecar cannot be read
+    static TimeIndex open(Path log, int interval) throws IOException {
+        Path idx = sidecar(log);
+        long size = Files.size(log);
+        long mtime = Files.getLastModifiedTime(log).toMillis();
+        if (Files.exists(idx)) {
+            TimeIndex index = read(log, idx, size, mtime, interval);
+            if (index != null) {
+                return index;
+            }
+        }
+        TimeIndex index = build(log, interval);
+        Path tmp = idx.resolveSibling(idx.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(size);
+            out.writeLong(mtime);
+            out.writeInt(interval);
+            out.writeInt(index.offsets.length);
+            for (int i = 0; i < index.offsets.length; i++) {
+                out.writeLong(index.epochNanos[i]);
+                out.writeLong(index.offsets[i]);
+            }
+        }
+        Files.move(tmp, idx, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return index;
+    }
+
+    // null if the sidecar is stale, truncated or corrupt
+    private static TimeIndex read(Path log, Path idx, long size, long mtime, int interval) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(idx)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readLong() != size || in.readLong() != mtime
+                    || in.readInt() != interval) {
+                return null;
+            }
+            int n = in.readInt();
+            if (n < 0 || Files.size(idx) != HEADER_BYTES + 16L * n) {
+                return null;
+            }
+            long[] epochNanos = new long[n];
+            long[] offsets = new long[n];
+            for (int i = 0; i < n; i++) {
+                epochNanos[i] = in.readLong();
+                offsets[i] = in.readLong();
+            }
+            return new TimeIndex(log, epochNanos, offsets);
+        } catch (IOException e) {
+            return null; // EOFException of a truncated file, or unreadable: rebuilt
+        }
+    }
+
+    // every chunk indexes its first entry and each n-th line after it
+    private static TimeIndex build(Path log, int interval) throws IOException {
+        List<Points> points;
+        try (Stream<MappedLines.Chunk> chunks = MappedLines.chunks(log)) {
+            points = chunks.map(chunk -> {
+                Points chunkPoints = new Points();
+                chunk.forEachLine((line, offset) -> chunkPoints.accept(line, offset, interval));
+                return chunkPoints;
+            }).collect(Collectors.toList());
+        }
+        int n = points.stream().mapToInt(p -> p.size).sum();
+        long[] epochNanos = new long[n];
+        long[] offsets = new long[n];
+        int i = 0;
+        for (Points p : points) {
+            System.arraycopy(p.epochNanos, 0, epochNanos, i, p.size);
+            System.arraycopy(p.offsets, 0, offsets, i, p.size);
+            i += p.size;
+        }
+        return new TimeIndex(log, epochNanos, offsets);
+    }
+
+    int points() {
+        return offsets.length;
+    }
+
+    // {start, end} byte range of the log holding all entries of [from, to)
+    long[] slice(Instant from, Instant to) throws IOException {
+        long fromNanos = from.getEpochSecond() * 1_000_000_000L + from.getNano();
+        long toNanos = to.getEpochSecond() * 1_000_000_000L + to.getNano();
+        // the last point before 'from' starts the slice, the first point at or after 'to' ends it
+        int first = lowerBound(fromNanos) - 1;
+        int last = lowerBound(toNanos);
+        long start = first < 0 ? 0 : offsets[first];
+        long end = last < offsets.length ? offsets[last] : Files.size(log);
+        return new long[]{start, Math.max(start, end)};
+    }
+
+    // entries of [from, to), parsed from the indexed slice only
+    Stream<Entry> entries(Instant from, Instant to) throws IOException {
+        long[] slice = slice(from, to);
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.READ)) {
+            long chunkSize = MappedLines.chunkSize(slice[1] - slice[0], ForkJoinPool.getCommonPoolParallelism());
+            return MappedLines.chunks(channel, slice[0], slice[1], chunkSize)
+                    .flatMap(MappedLines.Chunk::lines)
+                    .map(line -> Entry.parse(line, Entry.Format.LOG_ENTRY))
+                    .filter(Objects::nonNull)
+                    .filter(e -> !e.getTimeStamp().isBefore(from) && e.getTimeStamp().isBefore(to));
+        }
+    }
+
+    SortedCounts countErrorsPerSecond(Instant from, Instant to) throws IOException {
+        return entries(from, to)
+                .filter(Entry::isError)
+                .collect(LongCountMap.counting(Entry::getEpochSecond));
+    }
+
+    // first point with a timestamp >= nanos
+    private int lowerBound(long nanos) {
+        int low = 0;
+        int high = epochNanos.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (epochNanos[mid] < nanos) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static final class Points {
+
+        long[] epochNanos = new long[16];
+        long[] offsets = new long[16];
+        int size;
+        int linesSinceLast;
+
+        void accept(String line, long offset, int interval) {
+            if (size > 0 && ++linesSinceLast < interval) {
+                return;
+            }
+            LogEntry entry = LogEntry.scan(line);
+            if (entry == null) {
+                return;
+            }
+            if (size == offsets.length) {
+                epochNanos = Arrays.copyOf(epochNanos, size * 2);
+                offsets = Arrays.copyOf(offsets, size * 2);
+            }
+            epochNanos[size] = entry.epochSecond * 1_000_000_000L + entry.nano;
+            offsets[size++] = offset;
+            linesSinceLast = 0;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package schrader.stream.test.parallel;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TimeIndexTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void timeBoundedQueryParsesOnlyItsSlice() throws IOException {
+        Path log = dir.resolve("app.log");
+        LogGenerator.write(log, 100_000, 5);
+        TimeIndex index = TimeIndex.open(log, 256);
+        assertThat(Files.exists(TimeIndex.sidecar(log))).isTrue();
+        assertThat(TimeIndex.open(log, 256).points()).isEqualTo(index.points());
+
+        Instant from = Instant.parse("2019-02-12T09:01:00Z"); // the generator starts at 09:00Z
+        Instant to = Instant.parse("2019-02-12T09:02:30Z");
+        long[] slice = index.slice(from, to);
+        assertThat(slice[1] - slice[0]).isLessThan(Files.size(log) / 2);
+
+        Map<Long, Long> expected;
+        try (Stream<String> lines = Files.lines(log)) {
+            expected = Consolidations.errors(lines)
+                    .filter(e -> !e.getTimeStamp().isBefore(from) && e.getTimeStamp().isBefore(to))
+                    .collect(Collectors.groupingBy(Entry::getEpochSecond, Collectors.counting()));
+        }
+        assertThat(expected).isNotEmpty();
+        assertThat(index.countErrorsPerSecond(from, to).stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue))).isEqualTo(expected);
+        assertThat(index.entries(Instant.parse("2000-01-01T00:00:00Z"), Instant.parse("2100-01-01T00:00:00Z")).count())
+                .isEqualTo(100_000);
+    }
+
+    @Test
+    void rebuildsATruncatedSidecar() throws IOException {
+        Path log = dir.resolve("app.log");
+        LogGenerator.write(log, 10_000, 5);
+        int points = TimeIndex.open(log, 256).points();
+        Path idx = TimeIndex.sidecar(log);
+        byte[] bytes = Files.readAllBytes(idx);
+        Files.write(idx, Arrays.copyOf(bytes, bytes.length - 20));
+
+        assertThat(TimeIndex.open(log, 256).points()).isEqualTo(points);
+        assertThat(Files.readAllBytes(idx)).isEqualTo(bytes);
+        Files.write(idx, Arrays.copyOf(bytes, 10));
+        assertThat(TimeIndex.open(log, 256).points()).isEqualTo(points);
+    }
+}
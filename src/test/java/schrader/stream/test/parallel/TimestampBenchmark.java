@@ -0,0 +1,94 @@
+package schrader.stream.test.parallel;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+// Run with: gradle jmh -Pjmh="TimestampBenchmark"
+// One operation decodes one timestamp of a run of consecutive log timestamps.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class TimestampBenchmark {
+
+    private static final int N = 4096;
+
+    private final String[] timestamps = new String[N];
+    private final TimestampDecoder decoder = new TimestampDecoder();
+    private final TimestampDecoder seconds = new TimestampDecoder(ChronoUnit.SECONDS);
+    private final Entry entry = new ParsedEntry();
+
+    @Setup
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(4711);
+        long millis = Instant.parse("2019-02-12T09:00:00Z").toEpochMilli();
+        for (int i = 0; i < N; i++) {
+            millis += random.nextInt(6);
+            timestamps[i] = DateTimeFormatter.ISO_OFFSET_DATE_TIME.format(
+                    OffsetDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneOffset.ofHours(1)));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public long localDateTimeParse() {
+        long sum = 0;
+        for (String s : timestamps) {
+            sum += LocalDateTime.parse(s, DateTimeFormatter.ISO_OFFSET_DATE_TIME).toEpochSecond(ZoneOffset.UTC);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public long timestampsParse() {
+        long sum = 0;
+        for (String s : timestamps) {
+            Timestamps.parse(s, 0, s.length(), entry);
+            sum += entry.epochSecond + entry.nano;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public long cachedDecoder() {
+        long sum = 0;
+        for (String s : timestamps) {
+            decoder.decode(s, 0, s.length(), entry);
+            sum += entry.epochSecond + entry.nano;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public long cachedDecoderSeconds() {
+        long sum = 0;
+        for (String s : timestamps) {
+            seconds.decode(s, 0, s.length(), entry);
+            sum += entry.epochSecond;
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,132 @@
+package schrader.stream.test.parallel;
+
+import java.time.temporal.ChronoUnit;
+
+// Timestamps.parse for consecutive log lines: the epoch second of the last "yyyy-MM-ddTHH:mm" prefix
+// and its offset are kept, a line of the same minute only decodes its seconds and fraction. The
+// result is truncated to the precision, e.g. SECONDS for per second aggregation. Not thread-safe,
+// one decoder per thread or batch.
+final class TimestampDecoder {
+
+    private static final int PREFIX = 16; // "yyyy-MM-ddTHH:mm"
+    private static final int MAX_OFFSET = 9; // "+HH:MM:SS"
+
+    private final long unitNanos; // below a second
+    private final long unitSeconds; // a second and above
+    private final boolean fraction; // whether the fraction survives the truncation
+    private final char[] prefix = new char[PREFIX];
+    private final char[] offset = new char[MAX_OFFSET];
+    private int offsetLength = -1; // -1 while nothing is cached
+    private long minute; // epoch second of the cached prefix, offset applied
+
+    TimestampDecoder() {
+        this(ChronoUnit.NANOS);
+    }
+
+    // units from NANOS to DAYS which divide a day, like Instant.truncatedTo
+    TimestampDecoder(ChronoUnit precision) {
+        long nanos = precision.getDuration().toNanos();
+        if (precision.getDuration().getSeconds() > 86_400 || 86_400_000_000_000L % nanos != 0) {
+            throw new IllegalArgumentException("unit does not divide a day: " + precision);
+        }
+        this.unitNanos = Math.min(nanos, 1_000_000_000);
+        this.unitSeconds = Math.max(nanos / 1_000_000_000, 1);
+        this.fraction = nanos < 1_000_000_000;
+    }
+
+    boolean decode(CharSequence s, int from, int to, Entry into) {
+        if (offsetLength < 0 || to - from < PREFIX + 4 || !samePrefix(s, from)) {
+            return decodeAndCache(s, from, to, into);
+        }
+        int second = Timestamps.digits(s, from + 17, 2);
+        if (second < 0 || second > 59) {
+            return false;
+        }
+        int p = from + 19;
+        int nano = 0;
+        if (p < to && s.charAt(p) == '.') {
+            int start = ++p;
+            if (fraction) {
+                while (p < to && Timestamps.isDigit(s.charAt(p))) {
+                    nano = nano * 10 + (s.charAt(p++) - '0');
+                }
+            } else {
+                while (p < to && Timestamps.isDigit(s.charAt(p))) {
+                    p++;
+                }
+            }
+            int n = p - start;
+            if (n == 0 || n > 9) {
+                return false;
+            }
+            for (; n < 9 && fraction; n++) {
+                nano *= 10;
+            }
+        }
+        if (!sameOffset(s, p, to)) {
+            return decodeAndCache(s, from, to, into);
+        }
+        into.epochSecond = minute + second;
+        into.nano = nano;
+        truncate(into);
+        return true;
+    }
+
+    private boolean decodeAndCache(CharSequence s, int from, int to, Entry into) {
+        if (!Timestamps.parse(s, from, to, into)) {
+            return false;
+        }
+        offsetLength = -1;
+        if (to - from >= PREFIX + 4 && Timestamps.fixedWidth(s, from)) {
+            int p = from + 19;
+            if (s.charAt(p) == '.') {
+                do {
+                    p++;
+                } while (p < to && Timestamps.isDigit(s.charAt(p)));
+            }
+            if (to - p <= MAX_OFFSET && Timestamps.offsetSeconds(s, p, to) != Timestamps.NO_OFFSET) {
+                for (int i = 0; i < PREFIX; i++) {
+                    prefix[i] = s.charAt(from + i);
+                }
+                for (int i = p; i < to; i++) {
+                    offset[i - p] = s.charAt(i);
+                }
+                offsetLength = to - p;
+                minute = into.epochSecond - Timestamps.digits(s, from + 17, 2);
+            }
+        }
+        truncate(into);
+        return true;
+    }
+
+    // from the end, the minute changes first
+    private boolean samePrefix(CharSequence s, int from) {
+        for (int i = PREFIX - 1; i >= 0; i--) {
+            if (s.charAt(from + i) != prefix[i]) {
+                return false;
+            }
+        }
+        return s.charAt(from + PREFIX) == ':';
+    }
+
+    private boolean sameOffset(CharSequence s, int p, int to) {
+        if (to - p != offsetLength) {
+            return false;
+        }
+        for (int i = 0; i < offsetLength; i++) {
+            if (s.charAt(p + i) != offset[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void truncate(Entry into) {
+        if (fraction) {
+            into.nano -= into.nano % unitNanos;
+        } else {
+            into.nano = 0;
+            into.epochSecond = Math.floorDiv(into.epochSecond, unitSeconds) * unitSeconds;
+        }
+    }
+}
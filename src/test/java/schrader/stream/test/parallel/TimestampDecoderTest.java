@@ -0,0 +1,69 @@
+package schrader.stream.test.parallel;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TimestampDecoderTest {
+
+    private static final ZoneOffset[] OFFSETS = {ZoneOffset.UTC, ZoneOffset.ofHours(1), ZoneOffset.ofHoursMinutes(-5, -30),
+            ZoneOffset.ofHoursMinutesSeconds(2, 0, 30)};
+
+    @Test
+    void matchesOffsetDateTimeOnConsecutiveLines() {
+        SplittableRandom random = new SplittableRandom(17);
+        TimestampDecoder decoder = new TimestampDecoder();
+        Entry entry = new ParsedEntry();
+        long millis = Instant.parse("2019-12-31T23:58:00Z").toEpochMilli();
+        for (int i = 0; i < 100_000; i++) {
+            millis += random.nextInt(50);
+            ZoneOffset offset = random.nextInt(1000) == 0 ? OFFSETS[random.nextInt(OFFSETS.length)] : OFFSETS[1];
+            Instant instant = Instant.ofEpochMilli(millis).plusNanos(random.nextInt(2) * random.nextInt(1_000_000));
+            String text = DateTimeFormatter.ISO_OFFSET_DATE_TIME.format(OffsetDateTime.ofInstant(instant, offset));
+            assertThat(decoder.decode(text, 0, text.length(), entry)).as(text).isTrue();
+            assertThat(entry.getTimeStamp()).as(text).isEqualTo(instant);
+        }
+    }
+
+    @Test
+    void truncatesToThePrecision() {
+        String text = "2019-02-12T10:15:30.123456789+01:00";
+        Entry entry = new ParsedEntry();
+        for (ChronoUnit unit : new ChronoUnit[]{ChronoUnit.NANOS, ChronoUnit.MILLIS, ChronoUnit.SECONDS, ChronoUnit.MINUTES,
+                ChronoUnit.HOURS, ChronoUnit.DAYS}) {
+            TimestampDecoder decoder = new TimestampDecoder(unit);
+            Instant expected = OffsetDateTime.parse(text).toInstant().truncatedTo(unit);
+            for (int i = 0; i < 2; i++) { // cache miss and hit
+                assertThat(decoder.decode(text, 0, text.length(), entry)).isTrue();
+                assertThat(entry.getTimeStamp()).as(unit + " " + i).isEqualTo(expected);
+            }
+        }
+        assertThatThrownBy(() -> new TimestampDecoder(ChronoUnit.WEEKS)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void rejectsMalformedSuffixOnCacheHit() {
+        TimestampDecoder decoder = new TimestampDecoder();
+        Entry entry = new ParsedEntry();
+        assertThat(decode(decoder, "2019-02-12T10:15:30+01:00", entry)).isTrue();
+        assertThat(decode(decoder, "2019-02-12T10:15:61+01:00", entry)).isFalse();
+        assertThat(decode(decoder, "2019-02-12T10:15:3x+01:00", entry)).isFalse();
+        assertThat(decode(decoder, "2019-02-12T10:15:30.+01:00", entry)).isFalse();
+        assertThat(decode(decoder, "2019-02-12T10:15:30.1234567890+01:00", entry)).isFalse();
+        assertThat(decode(decoder, "2019-02-12T10:15:30+25:00", entry)).isFalse();
+        assertThat(decode(decoder, "2019-02-12T10:15:31Z", entry)).isTrue();
+        assertThat(entry.getTimeStamp()).isEqualTo(Instant.parse("2019-02-12T10:15:31Z"));
+    }
+
+    private static boolean decode(TimestampDecoder decoder, String text, Entry entry) {
+        return decoder.decode(text, 0, text.length(), entry);
+    }
+}
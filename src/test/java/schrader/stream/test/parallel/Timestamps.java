@@ -0,0 +1,174 @@
+package schrader.stream.test.parallel;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+// Decodes ISO offset date-times ("2019-02-12T10:15:30.123+01:00") into epoch seconds and nanos,
+// from Strings as well as from raw ASCII bytes (see AsciiChars).
+final class Timestamps {
+
+    static final int NO_OFFSET = Integer.MIN_VALUE;
+    static final int[] DAYS_IN_MONTH = {31, 29, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31};
+    private static final String MONTHS = "JanFebMarAprMayJunJulAugSepOctNovDec";
+
+    private Timestamps() {
+    }
+
+    // Same result as OffsetDateTime.parse(s, ISO_OFFSET_DATE_TIME).toInstant(), the offset is applied.
+    static boolean parse(CharSequence s, int from, int to, Entry into) {
+        if (to - from < 20 || !fixedWidth(s, from)) {
+            return parseSlow(s, from, to, into);
+        }
+        int year = digits(s, from, 4);
+        int month = digits(s, from + 5, 2);
+        int day = digits(s, from + 8, 2);
+        int hour = digits(s, from + 11, 2);
+        int minute = digits(s, from + 14, 2);
+        int second = digits(s, from + 17, 2);
+        if (month < 1 || month > 12 || day < 1 || day > DAYS_IN_MONTH[month - 1] || hour > 23 || minute > 59 || second > 59
+                || (month == 2 && day == 29 && !isLeap(year))) {
+            return false;
+        }
+        int p = from + 19;
+        int nano = 0;
+        if (s.charAt(p) == '.') {
+            int start = ++p;
+            while (p < to && isDigit(s.charAt(p))) {
+                nano = nano * 10 + (s.charAt(p++) - '0');
+            }
+            int n = p - start;
+            if (n == 0 || n > 9) {
+                return false;
+            }
+            for (; n < 9; n++) {
+                nano *= 10;
+            }
+        }
+        int offset = offsetSeconds(s, p, to);
+        if (offset == NO_OFFSET) {
+            return parseSlow(s, from, to, into);
+        }
+        into.epochSecond = epochDay(year, month, day) * 86_400 + hour * 3_600 + minute * 60 + second - offset;
+        into.nano = nano;
+        return true;
+    }
+
+    // access log time "10/Oct/2000:13:55:36 -0700", the offset is applied
+    static boolean parseAccessLog(CharSequence s, int from, int to, Entry into) {
+        if (to - from != 26 || s.charAt(from + 2) != '/' || s.charAt(from + 6) != '/' || s.charAt(from + 11) != ':'
+                || s.charAt(from + 14) != ':' || s.charAt(from + 17) != ':' || s.charAt(from + 20) != ' ') {
+            return false;
+        }
+        int day = digits(s, from, 2);
+        int month = 0;
+        for (int m = 0; m < 12 && month == 0; m++) {
+            if (s.charAt(from + 3) == MONTHS.charAt(m * 3) && s.charAt(from + 4) == MONTHS.charAt(m * 3 + 1)
+                    && s.charAt(from + 5) == MONTHS.charAt(m * 3 + 2)) {
+                month = m + 1;
+            }
+        }
+        int year = digits(s, from + 7, 4);
+        int hour = digits(s, from + 12, 2);
+        int minute = digits(s, from + 15, 2);
+        int second = digits(s, from + 18, 2);
+        int offset = digits(s, from + 22, 4);
+        char sign = s.charAt(from + 21);
+        if (month < 1 || day < 1 || day > DAYS_IN_MONTH[month - 1] || year < 0 || hour < 0 || hour > 23
+                || minute < 0 || minute > 59 || second < 0 || second > 59 || offset < 0 || (sign != '+' && sign != '-')) {
+            return false;
+        }
+        int offsetSeconds = (offset / 100 * 3_600 + offset % 100 * 60) * (sign == '-' ? -1 : 1);
+        into.epochSecond = epochDay(year, month, day) * 86_400 + hour * 3_600 + minute * 60 + second - offsetSeconds;
+        into.nano = 0;
+        return true;
+    }
+
+    static long epochDay(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        long era = (y >= 0 ? y : y - 399) / 400;
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146_097 + dayOfEra - 719_468;
+    }
+
+    // "yyyy-MM-ddTHH:mm:ss"
+    static boolean fixedWidth(CharSequence s, int p) {
+        for (int i = 0; i < 19; i++) {
+            char c = s.charAt(p + i);
+            boolean ok;
+            switch (i) {
+                case 4:
+                case 7:
+                    ok = c == '-';
+                    break;
+                case 10:
+                    ok = c == 'T';
+                    break;
+                case 13:
+                case 16:
+                    ok = c == ':';
+                    break;
+                default:
+                    ok = isDigit(c);
+            }
+            if (!ok) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // seconds east of UTC for "Z", "+HH:MM" or "+HH:MM:SS", NO_OFFSET if the region is none of them
+    static int offsetSeconds(CharSequence s, int p, int to) {
+        if (to - p == 1) {
+            return s.charAt(p) == 'Z' ? 0 : NO_OFFSET;
+        }
+        if ((to - p != 6 && to - p != 9) || (s.charAt(p) != '+' && s.charAt(p) != '-') || s.charAt(p + 3) != ':') {
+            return NO_OFFSET;
+        }
+        int hours = digits(s, p + 1, 2);
+        int minutes = digits(s, p + 4, 2);
+        int seconds = to - p == 9 && s.charAt(p + 6) == ':' ? digits(s, p + 7, 2) : to - p == 9 ? -1 : 0;
+        if (hours < 0 || hours > 18 || minutes < 0 || minutes > 59 || seconds < 0 || seconds > 59) {
+            return NO_OFFSET;
+        }
+        int offset = hours * 3_600 + minutes * 60 + seconds;
+        return s.charAt(p) == '-' ? -offset : offset;
+    }
+
+    private static boolean parseSlow(CharSequence s, int from, int to, Entry into) {
+        try {
+            Instant instant = OffsetDateTime.parse(s.subSequence(from, to), DateTimeFormatter.ISO_OFFSET_DATE_TIME)
+                    .toInstant();
+            into.epochSecond = instant.getEpochSecond();
+            into.nano = instant.getNano();
+            return true;
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    // -1 if the region holds a non-digit
+    static int digits(CharSequence s, int p, int n) {
+        int value = 0;
+        for (int i = p; i < p + n; i++) {
+            char c = s.charAt(i);
+            if (!isDigit(c)) {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    static boolean isLeap(int year) {
+        return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+    }
+}
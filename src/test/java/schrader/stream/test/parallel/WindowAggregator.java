@@ -0,0 +1,121 @@
+package schrader.stream.test.parallel;
+
+import java.util.Arrays;
+import java.util.stream.Collector;
+
+// Counts entries per level in tumbling or sliding windows. The counters live in a ring of
+// spec.buckets() buckets, so memory depends on the window size only, not on the timestamps seen.
+// Entries may come in any order within the ring: a window is emitted as soon as an entry beyond
+// its last bucket arrives, entries of buckets already emitted are counted as late and dropped.
+//
+// As a feed: add() entries as they come and flush() at the end. For (parallel) batches: counting()
+// collects into per-bucket tables first, which are replayed through an aggregator in bucket order.
+final class WindowAggregator {
+
+    private final WindowSpec spec;
+    private final WindowConsumer consumer;
+    private final int buckets;
+    private final long[] ring; // Levels.COUNT counters per bucket
+    private final long[] window = new long[Levels.COUNT]; // sum of the ring
+    private long base; // oldest bucket in the ring, the start bucket of the next window
+    private boolean started;
+    private long late;
+
+    WindowAggregator(WindowSpec spec, WindowConsumer consumer) {
+        this.spec = spec;
+        this.consumer = consumer;
+        this.buckets = spec.buckets();
+        this.ring = new long[buckets * Levels.COUNT];
+    }
+
+    void add(Entry entry) {
+        add(entry.getEpochSecond(), Levels.code(entry.level), 1);
+    }
+
+    void add(long epochSecond, byte level, long count) {
+        long bucket = spec.bucket(epochSecond);
+        if (!started) {
+            // the first windows start before the first entry, up to the one ending with its bucket
+            base = bucket - buckets + 1;
+            started = true;
+        } else if (bucket < base) {
+            late += count;
+            return;
+        }
+        advanceTo(bucket - buckets + 1);
+        ring[slot(bucket) + level] += count;
+        window[level] += count;
+    }
+
+    // emits the windows still open, entries added afterwards must not belong to them
+    void flush() {
+        while (!isEmpty()) {
+            emit();
+        }
+    }
+
+    // entries dropped because their windows had already been emitted
+    long late() {
+        return late;
+    }
+
+    // emits the windows starting before the given bucket
+    private void advanceTo(long bucket) {
+        while (base < bucket) {
+            if (isEmpty()) {
+                base = bucket; // skips a gap without emitting empty windows
+                return;
+            }
+            emit();
+        }
+    }
+
+    private void emit() {
+        if (!isEmpty()) {
+            consumer.accept(base * spec.slide, window);
+        }
+        int slot = slot(base);
+        for (int level = 0; level < Levels.COUNT; level++) {
+            window[level] -= ring[slot + level];
+        }
+        Arrays.fill(ring, slot, slot + Levels.COUNT, 0);
+        base++;
+    }
+
+    private boolean isEmpty() {
+        for (long count : window) {
+            if (count != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int slot(long bucket) {
+        return (int) Math.floorMod(bucket, (long) buckets) * Levels.COUNT;
+    }
+
+    // Collects entries into per-thread (bucket, level) count tables which are merged on join,
+    // the finisher slides the windows over the merged buckets.
+    static Collector<Entry, LongCountMap, WindowCounts> counting(WindowSpec spec) {
+        return Collector.of(LongCountMap::new,
+                (map, entry) -> map.add(key(spec, entry.getEpochSecond(), Levels.code(entry.level)), 1),
+                LongCountMap::merge,
+                map -> windows(spec, map),
+                Collector.Characteristics.UNORDERED);
+    }
+
+    // key of a (bucket, level) counter in the tables of counting() and the batch pipelines
+    static long key(WindowSpec spec, long epochSecond, byte level) {
+        return spec.bucket(epochSecond) * Levels.COUNT + level;
+    }
+
+    static WindowCounts windows(WindowSpec spec, LongCountMap bucketCounts) {
+        WindowCounts windows = new WindowCounts(spec);
+        WindowAggregator aggregator = new WindowAggregator(spec, windows);
+        bucketCounts.sorted().forEach((key, count) -> aggregator.add(
+                Math.floorDiv(key, Levels.COUNT) * spec.slide, (byte) Math.floorMod(key, Levels.COUNT), count));
+        aggregator.flush();
+        return windows;
+    }
+}
@@ -0,0 +1,111 @@
+package schrader.stream.test.parallel;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class WindowAggregatorTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void tumblingWindowsCountPerLevel() {
+        WindowCounts windows = new WindowCounts(WindowSpec.tumbling(Duration.ofMinutes(1)));
+        WindowAggregator aggregator = new WindowAggregator(windows.spec, windows);
+        aggregator.add(60, Levels.ERROR, 1);
+        aggregator.add(119, Levels.INFO, 2);
+        aggregator.add(61, Levels.ERROR, 1); // out of order within the open window
+        aggregator.add(3600, Levels.WARN, 1); // a gap of empty windows
+        aggregator.add(90, Levels.ERROR, 1); // late
+        aggregator.flush();
+
+        assertThat(windows.size()).isEqualTo(2);
+        assertThat(windows.start(0)).isEqualTo(60);
+        assertThat(windows.count(0, Levels.ERROR)).isEqualTo(2);
+        assertThat(windows.count(0, Levels.INFO)).isEqualTo(2);
+        assertThat(windows.start(1)).isEqualTo(3600);
+        assertThat(windows.total(1)).isEqualTo(1);
+        assertThat(aggregator.late()).isEqualTo(1);
+    }
+
+    @Test
+    void slidingWindowsOverlap() {
+        WindowCounts windows = new WindowCounts(WindowSpec.sliding(Duration.ofSeconds(30), Duration.ofSeconds(10)));
+        WindowAggregator aggregator = new WindowAggregator(windows.spec, windows);
+        aggregator.add(100, Levels.ERROR, 1);
+        aggregator.add(125, Levels.ERROR, 1);
+        aggregator.flush();
+
+        List<String> emitted = new ArrayList<>();
+        for (int i = 0; i < windows.size(); i++) {
+            emitted.add(windows.start(i) + ":" + windows.count(i, Levels.ERROR));
+        }
+        assertThat(emitted).containsExactly("80:1", "90:1", "100:2", "110:1", "120:1");
+    }
+
+    @Test
+    void rejectsSizeNotMultipleOfSlide() {
+        assertThatThrownBy(() -> WindowSpec.sliding(Duration.ofSeconds(25), Duration.ofSeconds(10)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> WindowSpec.tumbling(Duration.ofMillis(500)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void feedCollectorAndBatchesAgree() throws IOException {
+        Path log = dir.resolve("test.log");
+        LogGenerator.write(log, 50_000, 13);
+        WindowSpec spec = WindowSpec.sliding(Duration.ofMinutes(5), Duration.ofMinutes(1));
+
+        WindowCounts fed = new WindowCounts(spec);
+        WindowAggregator aggregator = new WindowAggregator(spec, fed);
+        try (Stream<String> lines = Files.lines(log)) {
+            lines.map(LogEntry::scan).filter(Objects::nonNull).forEach(aggregator::add);
+        }
+        aggregator.flush();
+        WindowCounts collected;
+        try (Stream<String> lines = Files.lines(log)) {
+            collected = lines.parallel().map(LogEntry::scan).filter(Objects::nonNull)
+                    .collect(WindowAggregator.counting(spec));
+        }
+        WindowCounts batched;
+        try (Stream<MappedLines.Chunk> chunks = MappedLines.chunks(log, 8)) {
+            batched = Consolidations.countPerWindow(chunks, spec);
+        }
+
+        assertThat(aggregator.late()).isZero();
+        assertThat(asMap(collected)).isEqualTo(asMap(fed)).isEqualTo(asMap(batched));
+        assertThat(fed.size()).isGreaterThan(5);
+        // every minute falls into 5 windows
+        long errors;
+        try (Stream<String> lines = Files.lines(log)) {
+            errors = Consolidations.errors(lines).count();
+        }
+        assertThat(fed.of(Levels.ERROR).total()).isEqualTo(5 * errors);
+    }
+
+    private static Map<Long, List<Long>> asMap(WindowCounts windows) {
+        Map<Long, List<Long>> map = new TreeMap<>();
+        for (int i = 0; i < windows.size(); i++) {
+            int window = i;
+            map.put(windows.start(i), Stream.of(Levels.TRACE, Levels.DEBUG, Levels.INFO, Levels.WARN, Levels.ERROR)
+                    .map(level -> windows.count(window, level)).collect(Collectors.toList()));
+        }
+        return map;
+    }
+}
@@ -0,0 +1,8 @@
+package schrader.stream.test.parallel;
+
+@FunctionalInterface
+interface WindowConsumer {
+
+    // counts are indexed by the Levels codes, the array is reused for the next window
+    void accept(long windowStart, long[] counts);
+}
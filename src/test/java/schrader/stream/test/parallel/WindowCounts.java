@@ -0,0 +1,64 @@
+package schrader.stream.test.parallel;
+
+import java.util.Arrays;
+
+// Windows in ascending start order with their counts per level (Levels codes), as emitted by a
+// WindowAggregator. Windows without any entry are left out.
+final class WindowCounts implements WindowConsumer {
+
+    final WindowSpec spec;
+    private long[] starts = new long[64];
+    private long[] counts = new long[64 * Levels.COUNT];
+    private int size;
+
+    WindowCounts(WindowSpec spec) {
+        this.spec = spec;
+    }
+
+    @Override
+    public void accept(long windowStart, long[] levelCounts) {
+        if (size == starts.length) {
+            starts = Arrays.copyOf(starts, size * 2);
+            counts = Arrays.copyOf(counts, size * 2 * Levels.COUNT);
+        }
+        starts[size] = windowStart;
+        System.arraycopy(levelCounts, 0, counts, size * Levels.COUNT, Levels.COUNT);
+        size++;
+    }
+
+    int size() {
+        return size;
+    }
+
+    // epoch second of the first second in the window, the window ends before start + spec.size
+    long start(int i) {
+        return starts[i];
+    }
+
+    long count(int i, byte level) {
+        return counts[i * Levels.COUNT + level];
+    }
+
+    long total(int i) {
+        long total = 0;
+        for (int level = 0; level < Levels.COUNT; level++) {
+            total += counts[i * Levels.COUNT + level];
+        }
+        return total;
+    }
+
+    // window start -> count of one level, windows where the level does not occur are skipped
+    SortedCounts of(byte level) {
+        long[] keys = new long[size];
+        long[] values = new long[size];
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            long count = count(i, level);
+            if (count != 0) {
+                keys[n] = starts[i];
+                values[n++] = count;
+            }
+        }
+        return new SortedCounts(keys, values, n);
+    }
+}
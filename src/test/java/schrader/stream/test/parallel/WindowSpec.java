@@ -0,0 +1,48 @@
+package schrader.stream.test.parallel;
+
+import java.time.Duration;
+
+// Windows of 'size' seconds starting every 'slide' seconds, aligned to the epoch. Tumbling windows
+// slide by their size, sliding windows overlap and the size has to be a multiple of the slide.
+// A window is made of size / slide buckets of 'slide' seconds, which are all that is counted.
+final class WindowSpec {
+
+    final long size;
+    final long slide;
+
+    private WindowSpec(long size, long slide) {
+        if (slide <= 0 || size % slide != 0) {
+            throw new IllegalArgumentException("size " + size + "s is no multiple of slide " + slide + "s");
+        }
+        this.size = size;
+        this.slide = slide;
+    }
+
+    static WindowSpec tumbling(Duration size) {
+        return new WindowSpec(seconds(size), seconds(size));
+    }
+
+    static WindowSpec sliding(Duration size, Duration slide) {
+        return new WindowSpec(seconds(size), seconds(slide));
+    }
+
+    private static long seconds(Duration duration) {
+        if (duration.getNano() != 0 || duration.isNegative()) {
+            throw new IllegalArgumentException("no whole number of seconds: " + duration);
+        }
+        return duration.getSeconds();
+    }
+
+    int buckets() {
+        return (int) (size / slide);
+    }
+
+    long bucket(long epochSecond) {
+        return Math.floorDiv(epochSecond, slide);
+    }
+
+    @Override
+    public String toString() {
+        return size == slide ? "tumbling " + size + "s" : "sliding " + size + "s every " + slide + "s";
+    }
+}